@@ -0,0 +1,712 @@
+package com.kinetica;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+final class ChannelMappedFile implements MappedFile {
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final double MIN_MAPPED_GROWTH_FACTOR = 1.5;
+    private static final long MEM_PAGE_SIZE = 4096;
+    private static final ByteBuffer[] NO_CHUNKS = new ByteBuffer[0];
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private FileLock fileLock;
+    private boolean writable;
+    private boolean heap;
+    private long size;
+    private ByteBuffer[] chunks = NO_CHUNKS;
+    private long pos;
+    private double growthFactor = 1.0;
+    private long minGrowth;
+    private long remapCount;
+
+    @Override
+    public void map(String path, boolean writable, long size) {
+        unmap();
+
+        try {
+            file = new RandomAccessFile(path, writable ? "rw" : "r");
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not open map file: " + ex.getMessage(), ex);
+        }
+
+        channel = file.getChannel();
+        this.writable = writable;
+        remap(size);
+        remapCount = 0;
+    }
+
+    public void allocate(long size) {
+        unmap();
+        heap = true;
+        writable = true;
+        remap(size);
+        remapCount = 0;
+    }
+
+    @Override
+    public void remap(long size) {
+        if (heap) {
+            remapHeap(size);
+            return;
+        }
+
+        if (channel == null) {
+            throw new RuntimeException("File not mapped");
+        }
+
+        if (size == -1) {
+            try {
+                size = channel.size();
+            } catch (IOException ex) {
+                unmap();
+                throw new RuntimeException("Could not get size of map file: " + ex.getMessage(), ex);
+            }
+        } else if (writable) {
+            try {
+                file.setLength(size);
+            } catch (IOException ex) {
+                unmap();
+                throw new RuntimeException("Could not set size of map file: " + ex.getMessage(), ex);
+            }
+        }
+
+        int chunkCount = (int)((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        ByteBuffer[] newChunks = new ByteBuffer[chunkCount];
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                long chunkSize = Math.min(CHUNK_SIZE, size - ((long)i << CHUNK_SHIFT));
+
+                if (i < chunks.length && chunks[i].capacity() == chunkSize) {
+                    newChunks[i] = chunks[i];
+                } else {
+                    newChunks[i] = channel.map(mode, (long)i << CHUNK_SHIFT, chunkSize).order(ByteOrder.nativeOrder());
+                }
+            }
+        } catch (IOException ex) {
+            unmap();
+            throw new RuntimeException("Could not map file: " + ex.getMessage(), ex);
+        }
+
+        chunks = newChunks;
+        this.size = size;
+        remapCount++;
+    }
+
+    private void remapHeap(long size) {
+        // Heap buffers are limited to a single chunk so that every region is
+        // a slice of one array
+        if (size < 0 || size > CHUNK_SIZE) {
+            throw new RuntimeException("Invalid heap buffer size: " + size);
+        }
+
+        ByteBuffer chunk = ByteBuffer.allocate((int)size).order(ByteOrder.nativeOrder());
+
+        if (chunks.length > 0) {
+            System.arraycopy(chunks[0].array(), 0, chunk.array(), 0, (int)Math.min(size, this.size));
+        }
+
+        chunks = size > 0 ? new ByteBuffer[] { chunk } : NO_CHUNKS;
+        this.size = size;
+        remapCount++;
+    }
+
+    @Override
+    public void unmap() {
+        if (heap) {
+            chunks = NO_CHUNKS;
+            size = 0;
+            heap = false;
+            writable = false;
+            pos = 0;
+        } else if (channel != null) {
+            chunks = NO_CHUNKS;
+            size = 0;
+
+            try {
+                file.close();
+            } catch (IOException ex) {
+            }
+
+            file = null;
+            channel = null;
+            fileLock = null;
+            writable = false;
+            pos = 0;
+        }
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public long getPos() {
+        return pos;
+    }
+
+    @Override
+    public long getRemapCount() {
+        return remapCount;
+    }
+
+    @Override
+    public void setGrowthPolicy(double factor, long minGrowth) {
+        this.growthFactor = factor;
+        this.minGrowth = minGrowth;
+    }
+
+    @Override
+    public void reserve(long length) {
+        if (pos + length > size) {
+            if (!writable) {
+                throw new RuntimeException("End of file reached");
+            }
+
+            remap(limitHeap(pageAlign(pos + length), pos + length));
+        }
+    }
+
+    @Override
+    public void advise(long pos, long length, int hint) {
+        // NIO has no madvise; the only hints that can be honoured are the
+        // ones asking for pages to be read in, which a temporary mapping
+        // loads into the page cache shared with the chunk mappings
+        if (channel == null || pos >= size || length <= 0) {
+            return;
+        }
+
+        if (hint == ADVISE_WILLNEED || hint == ADVISE_POPULATE) {
+            long end = Math.min(pos + length, size);
+
+            try {
+                for (long start = pos; start < end; start += CHUNK_SIZE) {
+                    channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, end - start)).load();
+                }
+            } catch (IOException ex) {
+            }
+        }
+    }
+
+    @Override
+    public void seek(long pos) {
+        ensure(pos - this.pos);
+        this.pos = pos;
+    }
+
+    @Override
+    public ByteBuffer getBuffer(long pos, long length) {
+        if (pos < 0 || length < 0 || pos > size - length || length > Integer.MAX_VALUE) {
+            throw new IndexOutOfBoundsException("Invalid buffer range: " + pos + ", " + length);
+        }
+
+        return region(pos, length);
+    }
+
+    @Override
+    public long readLong() {
+        ensure(8);
+        long result = readLong(pos);
+        pos += 8;
+        return result;
+    }
+
+    @Override
+    public void read(byte[] value, long length) {
+        ensure(length);
+        read(pos, value, 0, length);
+        pos += length;
+    }
+
+    @Override
+    public byte readByte(long pos) {
+        return chunks[(int)(pos >>> CHUNK_SHIFT)].get((int)(pos & CHUNK_MASK));
+    }
+
+    @Override
+    public double readDouble(long pos) {
+        ByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        int offset = (int)(pos & CHUNK_MASK);
+        return offset <= chunk.limit() - 8 ? chunk.getDouble(offset) : region(pos, 8).getDouble(0);
+    }
+
+    @Override
+    public float readFloat(long pos) {
+        ByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        int offset = (int)(pos & CHUNK_MASK);
+        return offset <= chunk.limit() - 4 ? chunk.getFloat(offset) : region(pos, 4).getFloat(0);
+    }
+
+    @Override
+    public int readInt(long pos) {
+        ByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        int offset = (int)(pos & CHUNK_MASK);
+        return offset <= chunk.limit() - 4 ? chunk.getInt(offset) : region(pos, 4).getInt(0);
+    }
+
+    @Override
+    public long readLong(long pos) {
+        ByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        int offset = (int)(pos & CHUNK_MASK);
+        return offset <= chunk.limit() - 8 ? chunk.getLong(offset) : region(pos, 8).getLong(0);
+    }
+
+    @Override
+    public short readShort(long pos) {
+        ByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        int offset = (int)(pos & CHUNK_MASK);
+        return offset <= chunk.limit() - 2 ? chunk.getShort(offset) : region(pos, 2).getShort(0);
+    }
+
+    @Override
+    public void read(long pos, byte[] value, long length) {
+        read(pos, value, 0, length);
+    }
+
+    @Override
+    public long readCharN(long pos, byte[] value, long size) {
+        boolean found = false;
+        int length = 0;
+
+        for (int i = 0; i < size; i++) {
+            int j = (int)size - i - 1;
+            byte temp = readByte(pos + i);
+
+            if (!found && temp != 0) {
+                found = true;
+                length = j;
+            }
+
+            value[j] = temp;
+        }
+
+        return found ? length + 1 : 0;
+    }
+
+    @Override
+    public void readCharN(long pos, byte[] value, long offset, long count, long size, int[] lengths, long lengthsOffset) {
+        read(pos, value, offset, count * size);
+
+        for (int i = 0; i < count; i++) {
+            int start = (int)(offset + i * size);
+            int end = start + (int)size - 1;
+            int length = 0;
+
+            for (int j = start, k = end; j < k; j++, k--) {
+                byte temp = value[j];
+                value[j] = value[k];
+                value[k] = temp;
+            }
+
+            for (int j = end; j >= start; j--) {
+                if (value[j] != 0) {
+                    length = j - start + 1;
+                    break;
+                }
+            }
+
+            lengths[(int)lengthsOffset + i] = length;
+        }
+    }
+
+    @Override
+    public void readBooleans(long pos, boolean[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 1);
+            ByteBuffer buffer = region(pos, length);
+
+            for (int i = 0; i < length; i++) {
+                value[index + i] = buffer.get(i) != 0;
+            }
+
+            pos += length;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void read(long pos, byte[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 1);
+            region(pos, length).get(value, index, length);
+            pos += length;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void read(long pos, double[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 8);
+            region(pos, (long)length * 8).asDoubleBuffer().get(value, index, length);
+            pos += (long)length * 8;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void read(long pos, float[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 4);
+            region(pos, (long)length * 4).asFloatBuffer().get(value, index, length);
+            pos += (long)length * 4;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void read(long pos, int[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 4);
+            region(pos, (long)length * 4).asIntBuffer().get(value, index, length);
+            pos += (long)length * 4;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void read(long pos, long[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 8);
+            region(pos, (long)length * 8).asLongBuffer().get(value, index, length);
+            pos += (long)length * 8;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void read(long pos, short[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 2);
+            region(pos, (long)length * 2).asShortBuffer().get(value, index, length);
+            pos += (long)length * 2;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void writeByte(byte value) {
+        ensure(1);
+        writeByte(pos, value);
+        pos++;
+    }
+
+    @Override
+    public void writeLong(long value) {
+        ensure(8);
+        writeLong(pos, value);
+        pos += 8;
+    }
+
+    @Override
+    public void write(byte[] value, long length) {
+        ensure(length);
+        write(pos, value, 0, length);
+        pos += length;
+    }
+
+    @Override
+    public void writeByte(long pos, byte value) {
+        chunks[(int)(pos >>> CHUNK_SHIFT)].put((int)(pos & CHUNK_MASK), value);
+    }
+
+    @Override
+    public void writeDouble(long pos, double value) {
+        ByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        int offset = (int)(pos & CHUNK_MASK);
+
+        if (offset <= chunk.limit() - 8) {
+            chunk.putDouble(offset, value);
+        } else {
+            region(pos, 8).putDouble(0, value);
+        }
+    }
+
+    @Override
+    public void writeFloat(long pos, float value) {
+        ByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        int offset = (int)(pos & CHUNK_MASK);
+
+        if (offset <= chunk.limit() - 4) {
+            chunk.putFloat(offset, value);
+        } else {
+            region(pos, 4).putFloat(0, value);
+        }
+    }
+
+    @Override
+    public void writeInt(long pos, int value) {
+        ByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        int offset = (int)(pos & CHUNK_MASK);
+
+        if (offset <= chunk.limit() - 4) {
+            chunk.putInt(offset, value);
+        } else {
+            region(pos, 4).putInt(0, value);
+        }
+    }
+
+    @Override
+    public void writeLong(long pos, long value) {
+        ByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        int offset = (int)(pos & CHUNK_MASK);
+
+        if (offset <= chunk.limit() - 8) {
+            chunk.putLong(offset, value);
+        } else {
+            region(pos, 8).putLong(0, value);
+        }
+    }
+
+    @Override
+    public void writeShort(long pos, short value) {
+        ByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        int offset = (int)(pos & CHUNK_MASK);
+
+        if (offset <= chunk.limit() - 2) {
+            chunk.putShort(offset, value);
+        } else {
+            region(pos, 2).putShort(0, value);
+        }
+    }
+
+    @Override
+    public void write(long pos, byte[] value, long length) {
+        write(pos, value, 0, length);
+    }
+
+    @Override
+    public void writeCharN(long pos, byte[] value, long length, long size) {
+        for (int i = 0; i < size; i++) {
+            writeByte(pos + size - i - 1, i < length ? value[i] : 0);
+        }
+    }
+
+    @Override
+    public void write(long pos, boolean[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 1);
+            ByteBuffer buffer = region(pos, length);
+
+            for (int i = 0; i < length; i++) {
+                buffer.put(i, value[index + i] ? (byte)1 : (byte)0);
+            }
+
+            pos += length;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void write(long pos, byte[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 1);
+            region(pos, length).put(value, index, length);
+            pos += length;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void write(long pos, double[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 8);
+            region(pos, (long)length * 8).asDoubleBuffer().put(value, index, length);
+            pos += (long)length * 8;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void write(long pos, float[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 4);
+            region(pos, (long)length * 4).asFloatBuffer().put(value, index, length);
+            pos += (long)length * 4;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void write(long pos, int[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 4);
+            region(pos, (long)length * 4).asIntBuffer().put(value, index, length);
+            pos += (long)length * 4;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void write(long pos, long[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 8);
+            region(pos, (long)length * 8).asLongBuffer().put(value, index, length);
+            pos += (long)length * 8;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void write(long pos, short[] value, long offset, long count) {
+        int index = (int)offset;
+
+        while (count > 0) {
+            int length = span(pos, count, 2);
+            region(pos, (long)length * 2).asShortBuffer().put(value, index, length);
+            pos += (long)length * 2;
+            index += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    public void fill(long pos, byte value, long length) {
+        while (length > 0) {
+            int count = span(pos, length, 1);
+            ByteBuffer buffer = region(pos, count);
+
+            for (int i = 0; i < count; i++) {
+                buffer.put(i, value);
+            }
+
+            pos += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void truncate() {
+        remap(pos);
+    }
+
+    @Override
+    public void lock(boolean exclusive) {
+        if (channel == null) {
+            throw new RuntimeException("File not mapped");
+        }
+
+        try {
+            fileLock = channel.lock(0, Long.MAX_VALUE, !exclusive);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not lock file: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void unlock() {
+        if (fileLock == null) {
+            return;
+        }
+
+        try {
+            fileLock.release();
+            fileLock = null;
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not unlock file: " + ex.getMessage(), ex);
+        }
+    }
+
+    private int span(long pos, long count, int size) {
+        long available = (CHUNK_SIZE - (pos & CHUNK_MASK)) / size;
+        return (int)Math.max(1, Math.min(count, available));
+    }
+
+    private ByteBuffer region(long pos, long length) {
+        int index = (int)(pos >>> CHUNK_SHIFT);
+        int offset = (int)(pos & CHUNK_MASK);
+
+        if (index < chunks.length && offset + length <= chunks[index].capacity()) {
+            ByteBuffer result = chunks[index].duplicate();
+            result.position(offset).limit(offset + (int)length);
+            return result.slice().order(ByteOrder.nativeOrder());
+        }
+
+        if (pos + length > size) {
+            throw new IndexOutOfBoundsException("Invalid buffer range: " + pos + ", " + length);
+        }
+
+        if (heap) {
+            return ByteBuffer.allocate(0).order(ByteOrder.nativeOrder());
+        }
+
+        try {
+            return channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    pos, length).order(ByteOrder.nativeOrder());
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not map file: " + ex.getMessage(), ex);
+        }
+    }
+
+    private void ensure(long length) {
+        if (pos + length > size) {
+            if (!writable) {
+                throw new RuntimeException("End of file reached");
+            } else {
+                // Every remap maps a new buffer for the last partial chunk and
+                // the superseded one is only released when it is collected, so
+                // file-backed growth is kept geometric to bound their number
+                double factor = heap ? growthFactor : Math.max(growthFactor, MIN_MAPPED_GROWTH_FACTOR);
+                long grownSize = Math.max((long)(size * factor), size + minGrowth);
+                remap(limitHeap(pageAlign(Math.max(pos + length, grownSize)), pos + length));
+            }
+        }
+    }
+
+    private long limitHeap(long size, long required) {
+        return heap ? Math.min(size, Math.max(CHUNK_SIZE, required)) : size;
+    }
+
+    private static long pageAlign(long size) {
+        return size + (MEM_PAGE_SIZE - (size % MEM_PAGE_SIZE));
+    }
+}
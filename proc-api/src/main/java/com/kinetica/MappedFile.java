@@ -0,0 +1,263 @@
+package com.kinetica;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+interface MappedFile {
+    String STORAGE_PROPERTY = "kinetica.proc.storage";
+
+    int ADVISE_NORMAL = 0;
+    int ADVISE_SEQUENTIAL = 1;
+    int ADVISE_RANDOM = 2;
+    int ADVISE_WILLNEED = 3;
+    int ADVISE_DONTNEED = 4;
+    int ADVISE_HUGEPAGE = 5;
+    int ADVISE_POPULATE = 6;
+
+    static MappedFile create() {
+        String storage = System.getProperty(STORAGE_PROPERTY, "java");
+
+        switch (storage) {
+            case "java":
+                return new ChannelMappedFile();
+
+            case "native":
+                return new MemoryMappedFile();
+
+            default:
+                throw new RuntimeException("Unknown storage backend: " + storage);
+        }
+    }
+
+    static MappedFile createHeap() {
+        ChannelMappedFile result = new ChannelMappedFile();
+        result.allocate(0);
+        return result;
+    }
+
+    static MappedFile createLockable() {
+        // The database locks the status file with flock(), which NIO file
+        // locks do not exclude, so there is deliberately no Java fallback
+        try {
+            return new MemoryMappedFile();
+        } catch (LinkageError ex) {
+            throw new RuntimeException("Could not load native library required to lock the status file: "
+                    + ex.getMessage(), ex);
+        }
+    }
+
+    void map(String path, boolean writable, long size);
+    void remap(long size);
+    void unmap();
+
+    long getSize();
+    long getPos();
+    void seek(long pos);
+
+    long getRemapCount();
+    void setGrowthPolicy(double factor, long minGrowth);
+    void reserve(long length);
+    void advise(long pos, long length, int hint);
+
+    ByteBuffer getBuffer(long pos, long length);
+
+    default Map<String, byte[]> readBinaryMap(Map<String, byte[]> result) {
+        long length = readLong();
+
+        if (length > Integer.MAX_VALUE) {
+            throw new RuntimeException("Invalid map length: " + length);
+        }
+
+        if (result == null) {
+            result = new HashMap<>();
+        }
+
+        while (length > 0) {
+            String key = readString();
+            long valueLength = readLong();
+
+            if (length > Integer.MAX_VALUE) {
+                throw new RuntimeException("Invalid binary value length: " + length);
+            }
+
+            byte[] value = new byte[(int)valueLength];
+            read(value, valueLength);
+            result.put(key, value);
+            length--;
+        }
+
+        return result;
+    }
+
+    long readLong();
+
+    default String readString() {
+        long length = readLong();
+
+        if (length > Integer.MAX_VALUE) {
+            throw new RuntimeException("Invalid string length: " + length);
+        }
+
+        byte[] buffer = new byte[(int)length];
+        read(buffer, length);
+        return new String(buffer, StandardCharsets.UTF_8);
+    }
+
+    default Map<String, String> readStringMap(Map<String, String> result) {
+        long length = readLong();
+
+        if (length > Integer.MAX_VALUE) {
+            throw new RuntimeException("Invalid map length: " + length);
+        }
+
+        if (result == null) {
+            result = new HashMap<>();
+        }
+
+        while (length > 0) {
+            result.put(readString(), readString());
+            length--;
+        }
+
+        return result;
+    }
+
+    void read(byte[] value, long length);
+
+    byte readByte(long pos);
+    double readDouble(long pos);
+    float readFloat(long pos);
+    int readInt(long pos);
+    long readLong(long pos);
+    short readShort(long pos);
+
+    void read(long pos, byte[] value, long length);
+    long readCharN(long pos, byte[] value, long size);
+    void readCharN(long pos, byte[] value, long offset, long count, long size, int[] lengths, long lengthsOffset);
+    void readBooleans(long pos, boolean[] value, long offset, long count);
+    void read(long pos, byte[] value, long offset, long count);
+    void read(long pos, double[] value, long offset, long count);
+    void read(long pos, float[] value, long offset, long count);
+    void read(long pos, int[] value, long offset, long count);
+    void read(long pos, long[] value, long offset, long count);
+    void read(long pos, short[] value, long offset, long count);
+
+    default void writeBinaryMap(Map<String, byte[]> value) {
+        writeLong(value.size());
+
+        for (Map.Entry<String, byte[]> entry : value.entrySet()) {
+            writeString(entry.getKey());
+            writeLong(entry.getValue().length);
+            write(entry.getValue(), entry.getValue().length);
+        }
+    }
+
+    void writeByte(byte value);
+    void writeLong(long value);
+
+    default void writeString(String value) {
+        byte[] buffer = value.getBytes(StandardCharsets.UTF_8);
+        writeLong(buffer.length);
+        write(buffer, buffer.length);
+    }
+
+    default void writeStringMap(Map<String, String> value) {
+        writeLong(value.size());
+
+        for (Map.Entry<String, String> entry : value.entrySet()) {
+            writeString(entry.getKey());
+            writeString(entry.getValue());
+        }
+    }
+
+    void write(byte[] value, long length);
+
+    void writeByte(long pos, byte value);
+    void writeDouble(long pos, double value);
+    void writeFloat(long pos, float value);
+    void writeInt(long pos, int value);
+    void writeLong(long pos, long value);
+    void writeShort(long pos, short value);
+
+    void write(long pos, byte[] value, long length);
+    void writeCharN(long pos, byte[] value, long length, long size);
+    void write(long pos, boolean[] value, long offset, long count);
+    void write(long pos, byte[] value, long offset, long count);
+    void write(long pos, double[] value, long offset, long count);
+    void write(long pos, float[] value, long offset, long count);
+    void write(long pos, int[] value, long offset, long count);
+    void write(long pos, long[] value, long offset, long count);
+    void write(long pos, short[] value, long offset, long count);
+    void fill(long pos, byte value, long length);
+
+    default void gather(MappedFile source, long[] indices, int offset, int count, int size, long pos) {
+        switch (size) {
+            case 1:
+                for (int i = 0; i < count; i++) {
+                    writeByte(pos + i, source.readByte(indices[offset + i]));
+                }
+
+                break;
+
+            case 2:
+                for (int i = 0; i < count; i++) {
+                    writeShort(pos + i * 2L, source.readShort(indices[offset + i] * 2));
+                }
+
+                break;
+
+            case 4:
+                for (int i = 0; i < count; i++) {
+                    writeInt(pos + i * 4L, source.readInt(indices[offset + i] * 4));
+                }
+
+                break;
+
+            case 8:
+                for (int i = 0; i < count; i++) {
+                    writeLong(pos + i * 8L, source.readLong(indices[offset + i] * 8));
+                }
+
+                break;
+
+            default:
+                for (int i = 0; i < count; i++) {
+                    for (int j = 0; j < size; j += 8) {
+                        writeLong(pos + (long)i * size + j, source.readLong(indices[offset + i] * size + j));
+                    }
+                }
+        }
+    }
+
+    default void gather(MappedFile source, long[] positions, long[] lengths, int offset, int count, long pos) {
+        for (int i = offset; i < offset + count; i++) {
+            long j = 0;
+
+            for (; j + 8 <= lengths[i]; j += 8) {
+                writeLong(pos + j, source.readLong(positions[i] + j));
+            }
+
+            for (; j < lengths[i]; j++) {
+                writeByte(pos + j, source.readByte(positions[i] + j));
+            }
+
+            pos += lengths[i];
+        }
+    }
+
+    default void copy(MappedFile source, long sourcePos, long pos, long length) {
+        while (length > 0) {
+            long count = Math.min(length, Integer.MAX_VALUE);
+            getBuffer(pos, count).put(source.getBuffer(sourcePos, count));
+            sourcePos += count;
+            pos += count;
+            length -= count;
+        }
+    }
+
+    void truncate();
+    void lock(boolean exclusive);
+    void unlock();
+}
@@ -10,12 +10,17 @@
 #include <cstring>
 #include <fcntl.h>
 #include <stdexcept>
+#include <stdint.h>
 #include <string>
 #include <unistd.h>
 #include <sys/file.h>
 #include <sys/mman.h>
 #include <sys/stat.h>
 
+#ifndef MADV_POPULATE_READ
+#define MADV_POPULATE_READ 22
+#endif
+
 class MemoryMappedFile
 {
     public:
@@ -24,7 +29,10 @@ class MemoryMappedFile
             m_writable(false),
             m_size(0),
             m_data(NULL),
-            m_pos(0)
+            m_pos(0),
+            m_growthFactor(1.0),
+            m_minGrowth(0),
+            m_remapCount(0)
         {
         }
 
@@ -45,6 +53,7 @@ class MemoryMappedFile
 
             m_writable = writable;
             remap(size);
+            m_remapCount = 0;
         }
 
         void remap(std::size_t size)
@@ -108,6 +117,7 @@ class MemoryMappedFile
 
             m_data = data;
             m_size = size;
+            ++m_remapCount;
         }
 
         void unmap()
@@ -133,11 +143,71 @@ class MemoryMappedFile
             return m_size;
         }
 
+        void* getData() const
+        {
+            return m_data;
+        }
+
         std::size_t getPos() const
         {
             return m_pos;
         }
 
+        std::size_t getRemapCount() const
+        {
+            return m_remapCount;
+        }
+
+        void setGrowthPolicy(const double factor, const std::size_t minGrowth)
+        {
+            m_growthFactor = factor;
+            m_minGrowth = minGrowth;
+        }
+
+        void advise(const std::size_t pos, const std::size_t length, const int hint)
+        {
+            if (m_size == 0 || pos >= m_size || length == 0)
+            {
+                return;
+            }
+
+            std::size_t start = pos - (pos % MEM_PAGE_SIZE);
+            std::size_t end = pos + length < m_size ? pos + length : m_size;
+            void* address = (char*)m_data + start;
+            int advice;
+
+            switch (hint)
+            {
+                case ADVISE_SEQUENTIAL: advice = MADV_SEQUENTIAL; break;
+                case ADVISE_RANDOM: advice = MADV_RANDOM; break;
+                case ADVISE_WILLNEED: advice = MADV_WILLNEED; break;
+                case ADVISE_DONTNEED: advice = MADV_DONTNEED; break;
+                case ADVISE_HUGEPAGE: advice = MADV_HUGEPAGE; break;
+                case ADVISE_POPULATE: advice = MADV_POPULATE_READ; break;
+                default: advice = MADV_NORMAL; break;
+            }
+
+            // Hints are advisory, so unsupported advice is not an error;
+            // kernels without MADV_POPULATE_READ fall back to read-ahead
+            if (madvise(address, end - start, advice) != 0 && advice == MADV_POPULATE_READ)
+            {
+                madvise(address, end - start, MADV_WILLNEED);
+            }
+        }
+
+        void reserve(const std::size_t length)
+        {
+            if (m_pos + length > m_size)
+            {
+                if (!m_writable)
+                {
+                    throw std::runtime_error("End of file reached");
+                }
+
+                remap(pageAlign(m_pos + length));
+            }
+        }
+
         void seek(const std::size_t pos)
         {
             ensure(pos - m_pos);
@@ -187,11 +257,40 @@ class MemoryMappedFile
             return found ? length + 1 : 0;
         }
 
+        void readCharN(const std::size_t pos, void* value, const std::size_t offset, const std::size_t count, const std::size_t size, void* lengths, const std::size_t lengthsOffset) const
+        {
+            const unsigned char* source = &((unsigned char*)m_data)[pos];
+            unsigned char* dest = (unsigned char*)value + offset;
+            int32_t* destLengths = (int32_t*)lengths + lengthsOffset;
+
+            for (std::size_t i = 0; i < count; ++i)
+            {
+                destLengths[i] = (int32_t)reverseCharN(source + i * size, dest + i * size, size);
+            }
+        }
+
         void read(const std::size_t pos, void* value, const std::size_t length) const
         {
             std::memcpy(value, &((char*)m_data)[pos], length);
         }
 
+        template<typename T>
+        void readArray(const std::size_t pos, void* value, const std::size_t offset, const std::size_t count) const
+        {
+            std::memcpy((T*)value + offset, &((char*)m_data)[pos], count * sizeof(T));
+        }
+
+        void readBooleans(const std::size_t pos, void* value, const std::size_t offset, const std::size_t count) const
+        {
+            const char* source = &((char*)m_data)[pos];
+            unsigned char* dest = (unsigned char*)value + offset;
+
+            for (std::size_t i = 0; i < count; ++i)
+            {
+                dest[i] = source[i] != 0;
+            }
+        }
+
         template<typename T>
         void write(const T& value)
         {
@@ -219,6 +318,52 @@ class MemoryMappedFile
             std::memcpy(&((char*)m_data)[pos], value, length);
         }
 
+        template<typename T>
+        void writeArray(const std::size_t pos, const void* value, const std::size_t offset, const std::size_t count)
+        {
+            std::memcpy(&((char*)m_data)[pos], (const T*)value + offset, count * sizeof(T));
+        }
+
+        void fill(const std::size_t pos, const char value, const std::size_t length)
+        {
+            std::memset(&((char*)m_data)[pos], value, length);
+        }
+
+        void gather(const MemoryMappedFile& source, const void* indices, const std::size_t offset, const std::size_t count, const std::size_t size, const std::size_t pos)
+        {
+            const int64_t* index = (const int64_t*)indices + offset;
+            const char* sourceData = (const char*)source.m_data;
+            char* data = &((char*)m_data)[pos];
+
+            switch (size)
+            {
+                case 1: gatherValues<int8_t>(sourceData, index, count, data); break;
+                case 2: gatherValues<int16_t>(sourceData, index, count, data); break;
+                case 4: gatherValues<int32_t>(sourceData, index, count, data); break;
+                case 8: gatherValues<int64_t>(sourceData, index, count, data); break;
+
+                default:
+                    for (std::size_t i = 0; i < count; ++i)
+                    {
+                        std::memcpy(data + i * size, sourceData + index[i] * size, size);
+                    }
+            }
+        }
+
+        void gather(const MemoryMappedFile& source, const void* positions, const void* lengths, const std::size_t offset, const std::size_t count, const std::size_t pos)
+        {
+            const int64_t* position = (const int64_t*)positions + offset;
+            const int64_t* length = (const int64_t*)lengths + offset;
+            const char* sourceData = (const char*)source.m_data;
+            char* data = &((char*)m_data)[pos];
+
+            for (std::size_t i = 0; i < count; ++i)
+            {
+                std::memcpy(data, sourceData + position[i], length[i]);
+                data += length[i];
+            }
+        }
+
         void writeCharN(const std::size_t pos, void* value, const std::size_t length, const std::size_t size)
         {
             for (std::size_t i = 0; i < size; ++i)
@@ -276,6 +421,14 @@ class MemoryMappedFile
         }
 
     private:
+        static const int ADVISE_NORMAL = 0;
+        static const int ADVISE_SEQUENTIAL = 1;
+        static const int ADVISE_RANDOM = 2;
+        static const int ADVISE_WILLNEED = 3;
+        static const int ADVISE_DONTNEED = 4;
+        static const int ADVISE_HUGEPAGE = 5;
+        static const int ADVISE_POPULATE = 6;
+
         static std::size_t MEM_PAGE_SIZE;
 
         int m_file;
@@ -283,10 +436,83 @@ class MemoryMappedFile
         std::size_t m_size;
         void* m_data;
         std::size_t m_pos;
+        double m_growthFactor;
+        std::size_t m_minGrowth;
+        std::size_t m_remapCount;
 
         MemoryMappedFile(const MemoryMappedFile&);
         MemoryMappedFile& operator=(const MemoryMappedFile&);
 
+        template<typename T>
+        static void gatherValues(const char* source, const int64_t* indices, const std::size_t count, char* data)
+        {
+            for (std::size_t i = 0; i < count; ++i)
+            {
+                std::memcpy(data + i * sizeof(T), source + indices[i] * sizeof(T), sizeof(T));
+            }
+        }
+
+        static std::size_t reverseCharN(const unsigned char* source, unsigned char* dest, const std::size_t size)
+        {
+            switch (size)
+            {
+                case 1:
+                    dest[0] = source[0];
+                    break;
+
+                case 2:
+                {
+                    uint16_t word;
+                    std::memcpy(&word, source, 2);
+                    word = __builtin_bswap16(word);
+                    std::memcpy(dest, &word, 2);
+                    break;
+                }
+
+                case 4:
+                {
+                    uint32_t word;
+                    std::memcpy(&word, source, 4);
+                    word = __builtin_bswap32(word);
+                    std::memcpy(dest, &word, 4);
+                    break;
+                }
+
+                default:
+                    for (std::size_t i = 0; i < size; i += 8)
+                    {
+                        uint64_t word;
+                        std::memcpy(&word, source + size - i - 8, 8);
+                        word = __builtin_bswap64(word);
+                        std::memcpy(dest + i, &word, 8);
+                    }
+            }
+
+            // Values are zero padded at the start of storage, so the length
+            // follows from the first non-zero stored byte
+            std::size_t i = 0;
+
+            while (i + 8 <= size)
+            {
+                uint64_t word;
+                std::memcpy(&word, source + i, 8);
+
+                if (word != 0)
+                {
+                    break;
+                }
+
+                i += 8;
+            }
+
+            while (i < size && source[i] == 0)
+            {
+                ++i;
+            }
+
+            return size - i;
+        }
+
         void ensure(const std::size_t length)
         {
             if (m_pos + length > m_size)
@@ -297,11 +523,28 @@ class MemoryMappedFile
                 }
                 else
                 {
-                    std::size_t minSize = m_pos + length;
-                    remap(minSize + (MEM_PAGE_SIZE - (minSize % MEM_PAGE_SIZE)));
+                    std::size_t newSize = m_pos + length;
+                    std::size_t grownSize = (std::size_t)(m_size * m_growthFactor);
+
+                    if (grownSize < m_size + m_minGrowth)
+                    {
+                        grownSize = m_size + m_minGrowth;
+                    }
+
+                    if (newSize < grownSize)
+                    {
+                        newSize = grownSize;
+                    }
+
+                    remap(pageAlign(newSize));
                 }
             }
         }
+
+        static std::size_t pageAlign(const std::size_t size)
+        {
+            return size + (MEM_PAGE_SIZE - (size % MEM_PAGE_SIZE));
+        }
 };
 
 std::size_t MemoryMappedFile::MEM_PAGE_SIZE = std::labs(sysconf(_SC_PAGESIZE));
@@ -1,17 +1,19 @@
 package com.kinetica;
 
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.javacpp.Loader;
 import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.annotation.ByRef;
+import org.bytedeco.javacpp.annotation.Cast;
 import org.bytedeco.javacpp.annotation.Name;
 import org.bytedeco.javacpp.annotation.NoException;
 import org.bytedeco.javacpp.annotation.Platform;
 import org.bytedeco.javacpp.annotation.StdString;
 
 @Platform(include="com/kinetica/MemoryMappedFile.cpp")
-final class MemoryMappedFile extends Pointer {
+final class MemoryMappedFile extends Pointer implements MappedFile {
     static {
         Loader.load();
     }
@@ -28,70 +30,30 @@ final class MemoryMappedFile extends Pointer {
 
     @NoException public native long getSize();
     @NoException public native long getPos();
+    @NoException public native @Cast("char*") BytePointer getData();
+    @NoException public native long getRemapCount();
+    @NoException public native void setGrowthPolicy(double factor, long minGrowth);
+    public native void reserve(long length);
+    @NoException public native void advise(long pos, long length, int hint);
     public native void seek(long pos);
 
-    public Map<String, byte[]> readBinaryMap(Map<String, byte[]> result) {
-        long length = readLong();
-
-        if (length > Integer.MAX_VALUE) {
-            throw new RuntimeException("Invalid map length: " + length);
+    public ByteBuffer getBuffer(long pos, long length) {
+        if (pos < 0 || length < 0 || pos > getSize() - length || length > Integer.MAX_VALUE) {
+            throw new IndexOutOfBoundsException("Invalid buffer range: " + pos + ", " + length);
         }
 
-        if (result == null) {
-            result = new HashMap<>();
+        if (length == 0) {
+            return ByteBuffer.allocateDirect(0).order(ByteOrder.nativeOrder());
         }
 
-        while (length > 0) {
-            String key = readString();
-            long valueLength = readLong();
-
-            if (length > Integer.MAX_VALUE) {
-                throw new RuntimeException("Invalid binary value length: " + length);
-            }
-
-            byte[] value = new byte[(int)valueLength];
-            read(value, valueLength);
-            result.put(key, value);
-            length--;
-        }
-
-        return result;
+        BytePointer pointer = getData();
+        pointer.position(pos).limit(pos + length);
+        return pointer.asByteBuffer().order(ByteOrder.nativeOrder());
     }
 
     @Name("read<int64_t>")
     public native long readLong();
 
-    public String readString() {
-        long length = readLong();
-
-        if (length > Integer.MAX_VALUE) {
-            throw new RuntimeException("Invalid string length: " + length);
-        }
-
-        byte[] buffer = new byte[(int)length];
-        read(buffer, length);
-        return new String(buffer, StandardCharsets.UTF_8);
-    }
-
-    public Map<String, String> readStringMap(Map<String, String> result) {
-        long length = readLong();
-
-        if (length > Integer.MAX_VALUE) {
-            throw new RuntimeException("Invalid map length: " + length);
-        }
-
-        if (result == null) {
-            result = new HashMap<>();
-        }
-
-        while (length > 0) {
-            result.put(readString(), readString());
-            length--;
-        }
-
-        return result;
-    }
-
     public native void read(byte[] value, long length);
 
     @Name("read<int8_t>")
@@ -116,15 +78,27 @@ final class MemoryMappedFile extends Pointer {
 
     @NoException public native long readCharN(long pos, byte[] value, long size);
 
-    public void writeBinaryMap(Map<String, byte[]> value) {
-        writeLong(value.size());
+    @NoException public native void readCharN(long pos, byte[] value, long offset, long count, long size, int[] lengths, long lengthsOffset);
 
-        for (Map.Entry<String, byte[]> entry : value.entrySet()) {
-            writeString(entry.getKey());
-            writeLong(entry.getValue().length);
-            write(entry.getValue(), entry.getValue().length);
-        }
-    }
+    @NoException public native void readBooleans(long pos, boolean[] value, long offset, long count);
+
+    @Name("readArray<int8_t>")
+    @NoException public native void read(long pos, byte[] value, long offset, long count);
+
+    @Name("readArray<double>")
+    @NoException public native void read(long pos, double[] value, long offset, long count);
+
+    @Name("readArray<float>")
+    @NoException public native void read(long pos, float[] value, long offset, long count);
+
+    @Name("readArray<int32_t>")
+    @NoException public native void read(long pos, int[] value, long offset, long count);
+
+    @Name("readArray<int64_t>")
+    @NoException public native void read(long pos, long[] value, long offset, long count);
+
+    @Name("readArray<int16_t>")
+    @NoException public native void read(long pos, short[] value, long offset, long count);
 
     @Name("write<int8_t>")
     public native void writeByte(byte value);
@@ -132,21 +106,6 @@ final class MemoryMappedFile extends Pointer {
     @Name("write<int64_t>")
     public native void writeLong(long value);
 
-    public void writeString(String value) {
-        byte[] buffer = value.getBytes(StandardCharsets.UTF_8);
-        writeLong(buffer.length);
-        write(buffer, buffer.length);
-    }
-
-    public void writeStringMap(Map<String, String> value) {
-        writeLong(value.size());
-
-        for (Map.Entry<String, String> entry : value.entrySet()) {
-            writeString(entry.getKey());
-            writeString(entry.getValue());
-        }
-    }
-
     public native void write(byte[] value, long length);
 
     @Name("write<int8_t>")
@@ -171,6 +130,53 @@ final class MemoryMappedFile extends Pointer {
 
     @NoException public native void writeCharN(long pos, byte[] value, long length, long size);
 
+    @Name("writeArray<int8_t>")
+    @NoException public native void write(long pos, boolean[] value, long offset, long count);
+
+    @Name("writeArray<int8_t>")
+    @NoException public native void write(long pos, byte[] value, long offset, long count);
+
+    @Name("writeArray<double>")
+    @NoException public native void write(long pos, double[] value, long offset, long count);
+
+    @Name("writeArray<float>")
+    @NoException public native void write(long pos, float[] value, long offset, long count);
+
+    @Name("writeArray<int32_t>")
+    @NoException public native void write(long pos, int[] value, long offset, long count);
+
+    @Name("writeArray<int64_t>")
+    @NoException public native void write(long pos, long[] value, long offset, long count);
+
+    @Name("writeArray<int16_t>")
+    @NoException public native void write(long pos, short[] value, long offset, long count);
+
+    @NoException public native void fill(long pos, byte value, long length);
+
+    @Override
+    public void gather(MappedFile source, long[] indices, int offset, int count, int size, long pos) {
+        if (source instanceof MemoryMappedFile) {
+            gatherNative((MemoryMappedFile)source, indices, offset, count, size, pos);
+        } else {
+            MappedFile.super.gather(source, indices, offset, count, size, pos);
+        }
+    }
+
+    @Override
+    public void gather(MappedFile source, long[] positions, long[] lengths, int offset, int count, long pos) {
+        if (source instanceof MemoryMappedFile) {
+            gatherNative((MemoryMappedFile)source, positions, lengths, offset, count, pos);
+        } else {
+            MappedFile.super.gather(source, positions, lengths, offset, count, pos);
+        }
+    }
+
+    @Name("gather")
+    @NoException private native void gatherNative(@ByRef MemoryMappedFile source, long[] indices, long offset, long count, long size, long pos);
+
+    @Name("gather")
+    @NoException private native void gatherNative(@ByRef MemoryMappedFile source, long[] positions, long[] lengths, long offset, long count, long pos);
+
     public native void truncate();
     public native void lock(boolean exclusive);
     public native void unlock();
@@ -6,19 +6,44 @@ import java.net.InetAddress;
 import java.net.Inet4Address;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Formatter;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ProcData {
     public static enum ColumnType {
@@ -107,10 +132,31 @@ public class ProcData {
         }
     }
 
+    public static enum AccessHint {
+        NORMAL    (MappedFile.ADVISE_NORMAL),
+        SEQUENTIAL(MappedFile.ADVISE_SEQUENTIAL),
+        RANDOM    (MappedFile.ADVISE_RANDOM),
+        WILLNEED  (MappedFile.ADVISE_WILLNEED),
+        DONTNEED  (MappedFile.ADVISE_DONTNEED),
+        HUGEPAGE  (MappedFile.ADVISE_HUGEPAGE),
+        POPULATE  (MappedFile.ADVISE_POPULATE);
+
+        private final int value;
+
+        private AccessHint(int value) {
+            this.value = value;
+        }
+    }
+
     public static class Column {
-        private static final DateTimeFormatter DATE_FORMAT;
-        private static final DateTimeFormatter DATETIME_FORMAT;
-        private static final DateTimeFormatter TIME_FORMAT;
+        protected static final DateTimeFormatter DATE_FORMAT;
+        protected static final DateTimeFormatter DATETIME_FORMAT;
+        protected static final DateTimeFormatter TIME_FORMAT;
+        protected static final long MILLIS_PER_DAY = 86400000;
+        // Dates store the year as a signed 11-bit offset from 1900
+        protected static final int MIN_EPOCH_DAY = epochDay(1900 - 1024, 1, 1);
+        protected static final int MAX_EPOCH_DAY = epochDay(1900 + 1023, 12, 31);
+        private static final boolean NATIVE_LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
         protected static final TimeZone UTC;
 
         static {
@@ -125,40 +171,43 @@ public class ProcData {
         protected final String name;
         protected final ColumnType type;
         protected final boolean isNullable;
+        protected final boolean isWritable;
         protected long size;
-        protected final MemoryMappedFile data;
-        protected final MemoryMappedFile nulls;
-        protected final MemoryMappedFile varData;
+        protected final MappedFile data;
+        protected final MappedFile nulls;
+        protected final MappedFile varData;
+        // Cached lazily; input columns may compute it from several threads at
+        // once, which only repeats the same count
+        protected volatile long nullCount = -1;
+
+        private Column(String name, ColumnType type, MappedFile file, boolean writable) {
+            this(name, type, file.readString(), file.readString(), file.readString(), writable);
+        }
 
-        private Column(MemoryMappedFile file, boolean writable) {
-            name = file.readString();
-            type = ColumnType.fromInt((int)file.readLong());
-            String dataPath = file.readString();
-            data = new MemoryMappedFile();
+        private Column(String name, ColumnType type, String dataPath, String nullsPath, String varDataPath, boolean writable) {
+            this(name, type, open(dataPath, writable), open(nullsPath, writable), open(varDataPath, writable),
+                    !nullsPath.isEmpty(), writable);
+        }
 
-            if (!dataPath.isEmpty()) {
-                data.map(dataPath, writable, -1);
-                size = data.getSize() / type.getSize();
-            } else {
-                size = 0;
-            }
+        private Column(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable, boolean writable) {
+            this.name = name;
+            this.type = type;
+            isNullable = nullable;
+            isWritable = writable;
+            this.data = data;
+            this.nulls = nulls;
+            this.varData = varData;
+            size = data.getSize() / type.getSize();
+        }
 
-            String nullsPath = file.readString();
-            nulls = new MemoryMappedFile();
+        protected static MappedFile open(String path, boolean writable) {
+            MappedFile result = MappedFile.create();
 
-            if (!nullsPath.isEmpty()) {
-                nulls.map(nullsPath, writable, -1);
-                isNullable = true;
-            } else {
-                isNullable = false;
+            if (!path.isEmpty()) {
+                result.map(path, writable, -1);
             }
 
-            String varDataPath = file.readString();
-            varData = new MemoryMappedFile();
-
-            if (!varDataPath.isEmpty()) {
-                varData.map(varDataPath, writable, -1);
-            }
+            return result;
         }
 
         public String getName() {
@@ -178,14 +227,180 @@ public class ProcData {
         }
 
         public boolean isNull(long index) {
-            if (index < 0 || index >= size) {
+            checkIndex(index);
+
+            if (!isNullable || nullCount == 0) {
+                return false;
+            } else {
+                return nulls.readByte(index) != 0;
+            }
+        }
+
+        public long getNullCount() {
+            if (!isNullable) {
+                return 0;
+            }
+
+            if (nullCount < 0) {
+                long rows = getSize();
+                nullCount = rows - countNonNull(0, rows);
+            }
+
+            return nullCount;
+        }
+
+        public boolean hasNulls() {
+            return getNullCount() > 0;
+        }
+
+        public long nextNull(long index) {
+            return nextNullFlag(index, true);
+        }
+
+        public long nextNonNull(long index) {
+            return nextNullFlag(index, false);
+        }
+
+        public void getNullBitmap(long index, long length, long[] bitmap) {
+            checkRange(index, length);
+
+            if ((length + 63) / 64 > bitmap.length) {
+                throw new IndexOutOfBoundsException("Invalid bitmap length specified");
+            }
+
+            Arrays.fill(bitmap, 0, (int)((length + 63) / 64), 0);
+
+            if (!isNullable) {
+                return;
+            }
+
+            long[] words = nullWords(length);
+
+            for (long i = 0; i < length; i += Scratch.BLOCK_SIZE * 8) {
+                int blockLength = (int)Math.min(length - i, Scratch.BLOCK_SIZE * 8);
+                int wordCount = blockLength / 8;
+                nulls.read(index + i, words, 0, wordCount);
+
+                // Each word holds eight null flags, which pack into one byte
+                // of the bitmap
+                for (int j = 0; j < wordCount; j++) {
+                    long packed = packNullFlags(words[j]);
+                    long bit = i + j * 8L;
+                    bitmap[(int)(bit >>> 6)] |= packed << (bit & 63);
+                }
+
+                for (int j = wordCount * 8; j < blockLength; j++) {
+                    long bit = i + j;
+                    bitmap[(int)(bit >>> 6)] |= (nulls.readByte(index + bit) != 0 ? 1L : 0L) << (bit & 63);
+                }
+            }
+        }
+
+        public BitSet getNullBitSet(long index, int length) {
+            long[] bitmap = new long[(length + 63) / 64];
+            getNullBitmap(index, length, bitmap);
+            return BitSet.valueOf(bitmap);
+        }
+
+        private long nextNullFlag(long index, boolean isNullFlag) {
+            if (index < 0) {
                 throw new IndexOutOfBoundsException("Invalid index specified");
             }
 
+            long end = getSize();
+
+            if (index >= end) {
+                return -1;
+            }
+
             if (!isNullable) {
-                return false;
+                return isNullFlag ? -1 : index;
+            }
+
+            long invert = isNullFlag ? 0 : 0x0101010101010101L;
+            long i = index;
+
+            // Nearby rows are checked a word at a time without copying; the
+            // scan only switches to growing block reads once they miss
+            for (int j = 0; j < 8 && i <= end - 8; j++, i += 8) {
+                long word = normalizeNullFlags(nulls.readLong(i)) ^ invert;
+
+                if (word != 0) {
+                    return i + firstNullFlag(word);
+                }
+            }
+
+            long[] words = new long[0];
+
+            for (int blockWords = 64; i <= end - 8; blockWords = Math.min(blockWords * 2, Scratch.BLOCK_SIZE)) {
+                int wordCount = (int)Math.min((end - i) / 8, blockWords);
+
+                if (words.length < wordCount) {
+                    words = new long[wordCount];
+                }
+
+                nulls.read(i, words, 0, wordCount);
+
+                for (int j = 0; j < wordCount; j++) {
+                    long word = normalizeNullFlags(words[j]) ^ invert;
+
+                    if (word != 0) {
+                        return i + j * 8L + firstNullFlag(word);
+                    }
+                }
+
+                i += wordCount * 8L;
+            }
+
+            for (; i < end; i++) {
+                if ((nulls.readByte(i) != 0) == isNullFlag) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private static int firstNullFlag(long word) {
+            return NATIVE_LITTLE_ENDIAN ? Long.numberOfTrailingZeros(word) >>> 3 : Long.numberOfLeadingZeros(word) >>> 3;
+        }
+
+        private static long[] nullWords(long length) {
+            return new long[(int)Math.min(length / 8, Scratch.BLOCK_SIZE)];
+        }
+
+        // Collapses each byte of a word of null flags to 0 or 1
+        static long normalizeNullFlags(long word) {
+            word |= word >>> 4;
+            word |= word >>> 2;
+            word |= word >>> 1;
+            return word & 0x0101010101010101L;
+        }
+
+        static long packNullFlags(long word) {
+            word = normalizeNullFlags(NATIVE_LITTLE_ENDIAN ? word : Long.reverseBytes(word));
+            return (word * 0x0102040810204080L) >>> 56;
+        }
+
+        public void getNulls(long index, boolean[] values, int offset, int length) {
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+
+            if (!isNullable) {
+                Arrays.fill(values, offset, offset + length, false);
             } else {
-                return nulls.readByte(index) != 0;
+                nulls.readBooleans(index, values, offset, length);
+            }
+        }
+
+        public void getNulls(long index, byte[] values, int offset, int length) {
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+
+            if (!isNullable) {
+                Arrays.fill(values, offset, offset + length, (byte)0);
+            } else {
+                nulls.read(index, values, offset, length);
             }
         }
 
@@ -197,8 +412,42 @@ public class ProcData {
             if (isNull(index)) {
                 return null;
             } else {
-                return new BigDecimal(data.readLong(index * 8)).movePointLeft(4);
+                return BigDecimal.valueOf(data.readLong(index * 8), Decimal.SCALE);
+            }
+        }
+
+        public long getUnsignedLong(long index) {
+            if (type != ColumnType.ULONG) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkIndex(index);
+            return data.readLong(index * 8);
+        }
+
+        public void getUnsignedLongs(long index, long[] values, int offset, int length) {
+            if (type != ColumnType.ULONG) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            getLongs(index, values, offset, length);
+        }
+
+        public long getUnscaledDecimal(long index) {
+            if (type != ColumnType.DECIMAL) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkIndex(index);
+            return data.readLong(index * 8);
+        }
+
+        public void getUnscaledDecimals(long index, long[] values, int offset, int length) {
+            if (type != ColumnType.DECIMAL) {
+                throw new IllegalStateException("Incompatible data type");
             }
+
+            getLongs(index, values, offset, length);
         }
 
         public BigInteger getBigInteger(long index) {
@@ -214,16 +463,7 @@ public class ProcData {
                     if (isNull(index)) {
                         return null;
                     } else {
-                        long value = data.readLong(index * 8);
-
-                        if (value < 0) {
-                            ByteBuffer buffer = ByteBuffer.allocate(8);
-                            buffer.putLong(value);
-                            byte[] bytes = buffer.array();
-                            return new BigInteger(1, bytes);
-                        } else {
-                            return BigInteger.valueOf(value);
-                        }
+                        return Unsigned.toBigInteger(data.readLong(index * 8));
                     }
 
                 default:
@@ -309,6 +549,237 @@ public class ProcData {
             }
         }
 
+        public int getEpochDay(long index) {
+            if (type != ColumnType.DATE) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkIndex(index);
+            return decodeDate(data.readInt(index * 4));
+        }
+
+        public void getEpochDays(long index, int[] values, int offset, int length) {
+            if (type != ColumnType.DATE) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+            data.read(index * 4, values, offset, length);
+
+            for (int i = offset; i < offset + length; i++) {
+                values[i] = decodeDate(values[i]);
+            }
+        }
+
+        public long getEpochMillis(long index) {
+            if (type != ColumnType.DATETIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkIndex(index);
+            return decodeDateTime(data.readLong(index * 8));
+        }
+
+        public void getEpochMillis(long index, long[] values, int offset, int length) {
+            if (type != ColumnType.DATETIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+            data.read(index * 8, values, offset, length);
+
+            for (int i = offset; i < offset + length; i++) {
+                values[i] = decodeDateTime(values[i]);
+            }
+        }
+
+        public int getMillisOfDay(long index) {
+            if (type != ColumnType.TIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkIndex(index);
+            return decodeTime(data.readInt(index * 4));
+        }
+
+        public void getMillisOfDays(long index, int[] values, int offset, int length) {
+            if (type != ColumnType.TIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+            data.read(index * 4, values, offset, length);
+
+            for (int i = offset; i < offset + length; i++) {
+                values[i] = decodeTime(values[i]);
+            }
+        }
+
+        public LocalDate getLocalDate(long index) {
+            if (type != ColumnType.DATE) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (isNull(index)) {
+                return null;
+            } else {
+                int value = data.readInt(index * 4);
+                return LocalDate.of(1900 + (value >> 21),
+                        (value >> 17) & 0b1111,
+                        (value >> 12) & 0b11111);
+            }
+        }
+
+        public LocalDateTime getLocalDateTime(long index) {
+            if (type != ColumnType.DATETIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (isNull(index)) {
+                return null;
+            } else {
+                long value = data.readLong(index * 8);
+                return LocalDateTime.of(1900 + (int)(value >> 53),
+                        (int)((value >> 49) & 0b1111),
+                        (int)((value >> 44) & 0b11111),
+                        (int)((value >> 39) & 0b11111),
+                        (int)((value >> 33) & 0b111111),
+                        (int)((value >> 27) & 0b111111),
+                        (int)((value >> 17) & 0b1111111111) * 1000000);
+            }
+        }
+
+        public LocalTime getLocalTime(long index) {
+            if (type != ColumnType.TIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (isNull(index)) {
+                return null;
+            } else {
+                int value = data.readInt(index * 4);
+                return LocalTime.of(value >> 26,
+                        (value >> 20) & 0b111111,
+                        (value >> 14) & 0b111111,
+                        ((value >> 4) & 0b1111111111) * 1000000);
+            }
+        }
+
+        public long getPackedChar(long index) {
+            return getPackedChar(index, 0);
+        }
+
+        public long getPackedChar(long index, int word) {
+            int words = packedCharWords();
+
+            if (word < 0 || word >= words) {
+                throw new IndexOutOfBoundsException("Invalid word specified");
+            }
+
+            checkIndex(index);
+
+            switch (type) {
+                case CHAR1: return PackedChar.fromStorage(data.readByte(index));
+                case CHAR2: return PackedChar.fromStorage(data.readShort(index * 2));
+                case CHAR4: return PackedChar.fromStorage(data.readInt(index * 4));
+                case CHAR8: return PackedChar.fromStorage(data.readLong(index * 8));
+                default: return PackedChar.fromStorage(data.readLong(index * 16 + (1 - word) * 8));
+            }
+        }
+
+        public void getPackedChars(long index, long[] values, int offset, int length) {
+            int words = packedCharWords();
+            checkRange(index, length);
+            checkArray(values.length, offset, length * words);
+            Scratch scratch = new Scratch();
+
+            for (int i = 0; i < length; i += Scratch.BLOCK_SIZE) {
+                int blockLength = Math.min(length - i, Scratch.BLOCK_SIZE);
+                int blockOffset = offset + i * words;
+
+                switch (type) {
+                    case CHAR1: {
+                        byte[] bytes = scratch.bytes();
+                        data.read(index + i, bytes, 0, blockLength);
+
+                        for (int j = 0; j < blockLength; j++) {
+                            values[blockOffset + j] = PackedChar.fromStorage(bytes[j]);
+                        }
+
+                        break;
+                    }
+
+                    case CHAR2: {
+                        short[] shorts = scratch.shorts();
+                        data.read((index + i) * 2, shorts, 0, blockLength);
+
+                        for (int j = 0; j < blockLength; j++) {
+                            values[blockOffset + j] = PackedChar.fromStorage(shorts[j]);
+                        }
+
+                        break;
+                    }
+
+                    case CHAR4: {
+                        int[] ints = scratch.ints();
+                        data.read((index + i) * 4, ints, 0, blockLength);
+
+                        for (int j = 0; j < blockLength; j++) {
+                            values[blockOffset + j] = PackedChar.fromStorage(ints[j]);
+                        }
+
+                        break;
+                    }
+
+                    case CHAR8:
+                        data.read((index + i) * 8, values, blockOffset, blockLength);
+
+                        for (int j = blockOffset; j < blockOffset + blockLength; j++) {
+                            values[j] = PackedChar.fromStorage(values[j]);
+                        }
+
+                        break;
+
+                    default:
+                        // Storage holds the low word first; swap into high, low order
+                        data.read((index + i) * 16, values, blockOffset, blockLength * 2);
+
+                        for (int j = blockOffset; j < blockOffset + blockLength * 2; j += 2) {
+                            long low = values[j];
+                            values[j] = PackedChar.fromStorage(values[j + 1]);
+                            values[j + 1] = PackedChar.fromStorage(low);
+                        }
+                }
+            }
+        }
+
+        public void getChars(long index, byte[] values, int offset, int[] lengths, int lengthsOffset, int length) {
+            switch (type) {
+                case CHAR1:
+                case CHAR2:
+                case CHAR4:
+                case CHAR8:
+                case CHAR16:
+                case CHAR32:
+                case CHAR64:
+                case CHAR128:
+                case CHAR256:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+
+            int valueSize = type.getSize();
+            checkRange(index, length);
+            checkArray(values.length, offset, length * valueSize);
+            checkArray(lengths.length, lengthsOffset, length);
+            data.readCharN(index * valueSize, values, offset, length, valueSize, lengths, lengthsOffset);
+        }
+
         public String getChar(long index) {
             switch (type) {
                 case CHAR1:
@@ -455,20 +926,51 @@ public class ProcData {
                 return null;
             } else {
                 long position = data.readLong(index * 8);
-                long valueSize;
-
-                if (index < size - 1) {
-                    valueSize = data.readLong((index + 1) * 8) - position;
-                } else {
-                    valueSize = varData.getSize() - position;
-                }
-
-                byte[] buffer = new byte[(int)valueSize];
-                varData.read(position, buffer, (int)valueSize);
+                int valueSize = varSize(index, position, 0);
+                byte[] buffer = new byte[valueSize];
+                varData.read(position, buffer, valueSize);
                 return buffer;
             }
         }
 
+        public void advise(AccessHint hint) {
+            advise(hint, 0, getSize());
+        }
+
+        public void advise(AccessHint hint, long index, long length) {
+            checkRange(index, length);
+            int valueSize = type.getSize();
+            data.advise(index * valueSize, length * valueSize, hint.value);
+
+            if (isNullable) {
+                nulls.advise(index, length, hint.value);
+            }
+
+            if ((type == ColumnType.BYTES || type == ColumnType.STRING) && length > 0) {
+                long start = data.readLong(index * 8);
+                varData.advise(start, varEnd(index + length - 1) - start, hint.value);
+            }
+        }
+
+        public VarSlice getVarSlice(long index, VarSlice reusable) {
+            int terminatorSize;
+
+            switch (type) {
+                case BYTES: terminatorSize = 0; break;
+                case STRING: terminatorSize = 1; break;
+                default: throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (isNull(index)) {
+                return null;
+            } else {
+                VarSlice result = reusable != null ? reusable : new VarSlice();
+                long position = data.readLong(index * 8);
+                result.reset(varData, position, varSize(index, position, terminatorSize), !isWritable);
+                return result;
+            }
+        }
+
         public String getVarString(long index) {
             if (type != ColumnType.STRING) {
                 throw new IllegalStateException("Incompatible data type");
@@ -478,255 +980,220 @@ public class ProcData {
                 return null;
             } else {
                 long position = data.readLong(index * 8);
-                long valueSize;
-
-                if (index < size - 1) {
-                    valueSize = data.readLong((index + 1) * 8) - position - 1;
-                } else {
-                    valueSize = varData.getSize() - position - 1;
-                }
-
-                byte[] buffer = new byte[(int)valueSize];
-                varData.read(position, buffer, (int)valueSize);
+                int valueSize = varSize(index, position, 1);
+                byte[] buffer = new byte[valueSize];
+                varData.read(position, buffer, valueSize);
                 return new String(buffer, StandardCharsets.UTF_8);
             }
         }
 
-        public String toString(long index) {
-            if (isNull(index)) {
-                return "";
-            } else {
-                switch (type) {
-                    case BOOLEAN: return getBoolean(index).toString();
+        public boolean getBooleanValue(long index) {
+            if (type != ColumnType.BOOLEAN) {
+                throw new IllegalStateException("Incompatible data type");
+            }
 
-                    case BYTES: {
-                        Formatter formatter = new Formatter();
+            checkIndex(index);
+            return data.readByte(index) != 0;
+        }
 
-                        for (byte b : getVarBytes(index)) {
-                            formatter.format("%02x", b);
-                        }
+        public byte getByteValue(long index) {
+            if (type != ColumnType.INT8) {
+                throw new IllegalStateException("Incompatible data type");
+            }
 
-                        return formatter.toString();
-                    }
+            checkIndex(index);
+            return data.readByte(index);
+        }
 
-                    case CHAR1: return getChar(index);
-                    case CHAR2: return getChar(index);
-                    case CHAR4: return getChar(index);
-                    case CHAR8: return getChar(index);
-                    case CHAR16: return getChar(index);
-                    case CHAR32: return getChar(index);
-                    case CHAR64: return getChar(index);
-                    case CHAR128: return getChar(index);
-                    case CHAR256: return getChar(index);
-                    case DATE: return DATE_FORMAT.format(getCalendar(index).getTime().toInstant());
-                    case DATETIME: return DATETIME_FORMAT.format(getCalendar(index).getTime().toInstant());
-                    case DECIMAL: return getBigDecimal(index).toString();
-                    case DOUBLE: return getDouble(index).toString();
-                    case FLOAT: return getFloat(index).toString();
-                    case INT: return getInt(index).toString();
-                    case INT8: return getByte(index).toString();
-                    case INT16: return getShort(index).toString();
-                    case IPV4: return getInet4Address(index).getHostAddress();
-                    case LONG: return getLong(index).toString();
-                    case STRING: return getVarString(index);
-                    case TIME: return TIME_FORMAT.format(getCalendar(index).getTime().toInstant());
-                    case TIMESTAMP: return getLong(index).toString();
-                    case ULONG: return getBigInteger(index).toString();
-                    case UUID: return getUUID(index).toString();
-                    default: throw new IllegalStateException("Invalid data type");
-                }
+        public double getDoubleValue(long index) {
+            if (type != ColumnType.DOUBLE) {
+                throw new IllegalStateException("Incompatible data type");
             }
-        }
-    }
 
-    public static final class InputColumn extends Column {
-        private InputColumn(MemoryMappedFile file) {
-            super(file, false);
+            checkIndex(index);
+            return data.readDouble(index * 8);
         }
-    }
 
-    public static final class OutputColumn extends Column {
-        private long pos;
+        public float getFloatValue(long index) {
+            if (type != ColumnType.FLOAT) {
+                throw new IllegalStateException("Incompatible data type");
+            }
 
-        private OutputColumn(MemoryMappedFile file) {
-            super(file, true);
+            checkIndex(index);
+            return data.readFloat(index * 4);
         }
 
-        public void setNull(long index) {
-            if (!isNullable) {
-                throw new IllegalStateException("Column " + name + " is not nullable");
-            }
+        public int getIntValue(long index) {
+            switch (type) {
+                case DATE:
+                case INT:
+                case IPV4:
+                case TIME:
+                    break;
 
-            if (index < 0 || index >= size) {
-                throw new IndexOutOfBoundsException("Invalid index specified");
+                default:
+                    throw new IllegalStateException("Incompatible data type");
             }
 
-            nulls.writeByte(index, (byte)1);
+            checkIndex(index);
+            return data.readInt(index * 4);
         }
 
-        private boolean handleNull(long index, Object value) {
-            if (value == null) {
-                setNull(index);
-                return true;
-            } else {
-                if (index < 0 || index >= size) {
-                    throw new IndexOutOfBoundsException("Invalid index specified");
-                }
-
-                if (isNullable) {
-                    nulls.writeByte(index, (byte)0);
-                }
+        public long getLongValue(long index) {
+            switch (type) {
+                case DATETIME:
+                case DECIMAL:
+                case LONG:
+                case TIMESTAMP:
+                case ULONG:
+                    break;
 
-                return false;
+                default:
+                    throw new IllegalStateException("Incompatible data type");
             }
+
+            checkIndex(index);
+            return data.readLong(index * 8);
         }
 
-        public void setBigDecimal(long index, BigDecimal value) {
-            if (type != ColumnType.DECIMAL) {
+        public short getShortValue(long index) {
+            if (type != ColumnType.INT16) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                data.writeLong(index * 8, value.movePointRight(4).longValueExact());
-            }
+            checkIndex(index);
+            return data.readShort(index * 2);
         }
 
-        public void setBigInteger(long index, BigInteger value) {
-            if (type != ColumnType.LONG && type != ColumnType.ULONG) {
+        public void getBooleans(long index, boolean[] values, int offset, int length) {
+            if (type != ColumnType.BOOLEAN) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                data.writeLong(index * 8, value.longValue());
-            }
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+            data.readBooleans(index, values, offset, length);
         }
 
-        public void setBoolean(long index, Boolean value) {
-            if (type != ColumnType.BOOLEAN) {
+        public void getBytes(long index, byte[] values, int offset, int length) {
+            if (type != ColumnType.INT8) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                data.writeByte(index, value ? (byte)1 : (byte)0);
-            }
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+            data.read(index, values, offset, length);
         }
 
-        public void setByte(long index, Byte value) {
-            if (type != ColumnType.INT8) {
+        public void getDoubles(long index, double[] values, int offset, int length) {
+            if (type != ColumnType.DOUBLE) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                data.writeByte(index, value);
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+            data.read(index * 8, values, offset, length);
+        }
+
+        public void getFloats(long index, float[] values, int offset, int length) {
+            if (type != ColumnType.FLOAT) {
+                throw new IllegalStateException("Incompatible data type");
             }
+
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+            data.read(index * 4, values, offset, length);
         }
 
-        public void setCalendar(long index, Calendar value) {
+        public void getInts(long index, int[] values, int offset, int length) {
             switch (type) {
                 case DATE:
-                    if (!handleNull(index, value)) {
-                        GregorianCalendar newValue = new GregorianCalendar(UTC);
-                        newValue.setGregorianChange(new Date(Long.MIN_VALUE));
-                        newValue.setTimeInMillis(value.getTimeInMillis());
-                        data.writeInt(index * 4,
-                                ((newValue.get(Calendar.YEAR) - 1900) << 21)
-                                | ((newValue.get(Calendar.MONTH) + 1) << 17)
-                                | (newValue.get(Calendar.DAY_OF_MONTH) << 12));
-                    }
-
-                    break;
-
-                case DATETIME:
-                    if (!handleNull(index, value)) {
-                        GregorianCalendar newValue = new GregorianCalendar(UTC);
-                        newValue.setGregorianChange(new Date(Long.MIN_VALUE));
-                        newValue.setTimeInMillis(value.getTimeInMillis());
-                        data.writeLong(index * 8,
-                                (((long)newValue.get(Calendar.YEAR) - 1900) << 53)
-                                | (((long)newValue.get(Calendar.MONTH) + 1) << 49)
-                                | ((long)newValue.get(Calendar.DAY_OF_MONTH) << 44)
-                                | ((long)newValue.get(Calendar.HOUR_OF_DAY) << 39)
-                                | ((long)newValue.get(Calendar.MINUTE) << 33)
-                                | ((long)newValue.get(Calendar.SECOND) << 27)
-                                | ((long)newValue.get(Calendar.MILLISECOND) << 17));
-                        break;
-                    }
-
+                case INT:
+                case IPV4:
                 case TIME:
-                    if (!handleNull(index, value)) {
-                        GregorianCalendar newValue = new GregorianCalendar(UTC);
-                        newValue.setGregorianChange(new Date(Long.MIN_VALUE));
-                        newValue.setTimeInMillis(value.getTimeInMillis());
-                        data.writeInt(index * 4,
-                                (newValue.get(Calendar.HOUR_OF_DAY) << 26)
-                                | (newValue.get(Calendar.MINUTE) << 20)
-                                | (newValue.get(Calendar.SECOND) << 14)
-                                | (newValue.get(Calendar.MILLISECOND) << 4));
-                    }
-
                     break;
 
                 default:
                     throw new IllegalStateException("Incompatible data type");
             }
+
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+            data.read(index * 4, values, offset, length);
         }
 
-        public void setChar(long index, String value) {
+        public void getLongs(long index, long[] values, int offset, int length) {
             switch (type) {
-                case CHAR1:
-                case CHAR2:
-                case CHAR4:
-                case CHAR8:
-                case CHAR16:
-                case CHAR32:
-                case CHAR64:
-                case CHAR128:
-                case CHAR256:
+                case DATETIME:
+                case DECIMAL:
+                case LONG:
+                case TIMESTAMP:
+                case ULONG:
                     break;
 
                 default:
                     throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                int valueSize = type.getSize();
-                byte[] buffer = value.getBytes(StandardCharsets.UTF_8);
-                data.writeCharN(index * valueSize, buffer, buffer.length, valueSize);
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+            data.read(index * 8, values, offset, length);
+        }
+
+        public void getShorts(long index, short[] values, int offset, int length) {
+            if (type != ColumnType.INT16) {
+                throw new IllegalStateException("Incompatible data type");
             }
+
+            checkRange(index, length);
+            checkArray(values.length, offset, length);
+            data.read(index * 2, values, offset, length);
         }
 
-        public void setDouble(long index, Double value) {
+        public ByteBuffer asByteBuffer() {
+            return buffer(data, 0, getSize() * type.getSize());
+        }
+
+        public ByteBuffer asByteBuffer(long index, int length) {
+            checkRange(index, length);
+            return buffer(data, index * type.getSize(), (long)length * type.getSize());
+        }
+
+        public DoubleBuffer asDoubleBuffer() {
             if (type != ColumnType.DOUBLE) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                data.writeDouble(index * 8, value);
+            return buffer(data, 0, getSize() * 8).asDoubleBuffer();
+        }
+
+        public DoubleBuffer asDoubleBuffer(long index, int length) {
+            if (type != ColumnType.DOUBLE) {
+                throw new IllegalStateException("Incompatible data type");
             }
+
+            checkRange(index, length);
+            return buffer(data, index * 8, (long)length * 8).asDoubleBuffer();
         }
 
-        public void setFloat(long index, Float value) {
+        public FloatBuffer asFloatBuffer() {
             if (type != ColumnType.FLOAT) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                data.writeFloat(index * 4, value);
-            }
+            return buffer(data, 0, getSize() * 4).asFloatBuffer();
         }
 
-        public void setInet4Address(long index, Inet4Address value) {
-            if (type != ColumnType.IPV4) {
+        public FloatBuffer asFloatBuffer(long index, int length) {
+            if (type != ColumnType.FLOAT) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                byte[] buffer = value.getAddress();
-                data.writeInt(index * 4, buffer[0] << 24 | buffer[1] << 16 | buffer[2] << 8 | buffer[3]);
-            }
+            checkRange(index, length);
+            return buffer(data, index * 4, (long)length * 4).asFloatBuffer();
         }
 
-        public void setInt(long index, Integer value) {
+        public IntBuffer asIntBuffer() {
             switch (type) {
                 case DATE:
                 case INT:
@@ -738,12 +1205,26 @@ public class ProcData {
                     throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                data.writeInt(index * 4, value);
+            return buffer(data, 0, getSize() * 4).asIntBuffer();
+        }
+
+        public IntBuffer asIntBuffer(long index, int length) {
+            switch (type) {
+                case DATE:
+                case INT:
+                case IPV4:
+                case TIME:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
             }
+
+            checkRange(index, length);
+            return buffer(data, index * 4, (long)length * 4).asIntBuffer();
         }
 
-        public void setLong(long index, Long value) {
+        public LongBuffer asLongBuffer() {
             switch (type) {
                 case DATETIME:
                 case DECIMAL:
@@ -756,176 +1237,5079 @@ public class ProcData {
                     throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                data.writeLong(index * 8, value);
+            return buffer(data, 0, getSize() * 8).asLongBuffer();
+        }
+
+        public LongBuffer asLongBuffer(long index, int length) {
+            switch (type) {
+                case DATETIME:
+                case DECIMAL:
+                case LONG:
+                case TIMESTAMP:
+                case ULONG:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
             }
+
+            checkRange(index, length);
+            return buffer(data, index * 8, (long)length * 8).asLongBuffer();
         }
 
-        public void setShort(long index, Short value) {
+        public ShortBuffer asShortBuffer() {
             if (type != ColumnType.INT16) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                data.writeShort(index * 2, value);
-            }
+            return buffer(data, 0, getSize() * 2).asShortBuffer();
         }
 
-        public void setUUID(long index, UUID value) {
-            if (type != ColumnType.UUID) {
+        public ShortBuffer asShortBuffer(long index, int length) {
+            if (type != ColumnType.INT16) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            if (!handleNull(index, value)) {
-                data.writeLong(index * 16, value.getLeastSignificantBits());
-                data.writeLong(index * 16 + 8, value.getMostSignificantBits());
+            checkRange(index, length);
+            return buffer(data, index * 2, (long)length * 2).asShortBuffer();
+        }
+
+        public ByteBuffer asNullsBuffer() {
+            if (!isNullable) {
+                throw new IllegalStateException("Column " + name + " is not nullable");
             }
+
+            return buffer(nulls, 0, getSize());
         }
 
-        public long appendBigDecimal(BigDecimal value) {
-            long index = pos;
-            setBigDecimal(pos, value);
-            pos++;
-            return index;
+        public ByteBuffer asNullsBuffer(long index, int length) {
+            if (!isNullable) {
+                throw new IllegalStateException("Column " + name + " is not nullable");
+            }
+
+            checkRange(index, length);
+            return buffer(nulls, index, length);
         }
 
-        public long appendBigInteger(BigInteger value) {
-            long index = pos;
-            setBigInteger(pos, value);
-            pos++;
-            return index;
-        }
+        public long countNonNull(long index, long length) {
+            checkRange(index, length);
+
+            if (!isNullable) {
+                return length;
+            }
+
+            long[] words = nullWords(length);
+            long count = 0;
+
+            for (long i = 0; i < length; i += Scratch.BLOCK_SIZE * 8) {
+                int blockLength = (int)Math.min(length - i, Scratch.BLOCK_SIZE * 8);
+                int wordCount = blockLength / 8;
+                nulls.read(index + i, words, 0, wordCount);
+
+                for (int j = 0; j < wordCount; j++) {
+                    count += Long.bitCount(normalizeNullFlags(words[j]));
+                }
+
+                for (int j = wordCount * 8; j < blockLength; j++) {
+                    count += nulls.readByte(index + i + j) != 0 ? 1 : 0;
+                }
+            }
+
+            return length - count;
+        }
+
+        public long countNonNull(long[] rows, int offset, int length) {
+            checkRows(rows, offset, length);
+
+            if (!isNullable) {
+                return length;
+            }
+
+            long count = 0;
+
+            for (int i = offset; i < offset + length; i++) {
+                count += nulls.readByte(rows[i]) == 0 ? 1 : 0;
+            }
+
+            return count;
+        }
+
+        public long sumLong(long index, long length) {
+            checkRange(index, length);
+            return aggregateLongs(index, null, 0, length)[1];
+        }
+
+        public long sumLong(long[] rows, int offset, int length) {
+            checkRows(rows, offset, length);
+            return aggregateLongs(0, rows, offset, length)[1];
+        }
+
+        public Long minLong(long index, long length) {
+            checkRange(index, length);
+            long[] result = aggregateLongs(index, null, 0, length);
+            return result[0] == 0 ? null : result[2];
+        }
+
+        public Long minLong(long[] rows, int offset, int length) {
+            checkRows(rows, offset, length);
+            long[] result = aggregateLongs(0, rows, offset, length);
+            return result[0] == 0 ? null : result[2];
+        }
+
+        public Long maxLong(long index, long length) {
+            checkRange(index, length);
+            long[] result = aggregateLongs(index, null, 0, length);
+            return result[0] == 0 ? null : result[3];
+        }
+
+        public Long maxLong(long[] rows, int offset, int length) {
+            checkRows(rows, offset, length);
+            long[] result = aggregateLongs(0, rows, offset, length);
+            return result[0] == 0 ? null : result[3];
+        }
+
+        public double sumDouble(long index, long length) {
+            checkRange(index, length);
+            return aggregateDoubles(index, null, 0, length)[1];
+        }
+
+        public double sumDouble(long[] rows, int offset, int length) {
+            checkRows(rows, offset, length);
+            return aggregateDoubles(0, rows, offset, length)[1];
+        }
+
+        public Double minDouble(long index, long length) {
+            checkRange(index, length);
+            double[] result = aggregateDoubles(index, null, 0, length);
+            return result[0] == 0 ? null : result[2];
+        }
+
+        public Double minDouble(long[] rows, int offset, int length) {
+            checkRows(rows, offset, length);
+            double[] result = aggregateDoubles(0, rows, offset, length);
+            return result[0] == 0 ? null : result[2];
+        }
+
+        public Double maxDouble(long index, long length) {
+            checkRange(index, length);
+            double[] result = aggregateDoubles(index, null, 0, length);
+            return result[0] == 0 ? null : result[3];
+        }
+
+        public Double maxDouble(long[] rows, int offset, int length) {
+            checkRows(rows, offset, length);
+            double[] result = aggregateDoubles(0, rows, offset, length);
+            return result[0] == 0 ? null : result[3];
+        }
+
+        public Double mean(long index, long length) {
+            checkRange(index, length);
+            double[] result = aggregateDoubles(index, null, 0, length);
+            return result[0] == 0 ? null : result[1] / result[0];
+        }
+
+        public Double mean(long[] rows, int offset, int length) {
+            checkRows(rows, offset, length);
+            double[] result = aggregateDoubles(0, rows, offset, length);
+            return result[0] == 0 ? null : result[1] / result[0];
+        }
+
+        public IntStream intStream() {
+            return intStream(0, getSize());
+        }
+
+        public IntStream intStream(long index, long length) {
+            switch (type) {
+                case BOOLEAN:
+                case INT:
+                case INT8:
+                case INT16:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkRange(index, length);
+            return StreamSupport.intStream(new IntColumnSpliterator(this, index, index + length), false);
+        }
+
+        public LongStream longStream() {
+            return longStream(0, getSize());
+        }
+
+        public LongStream longStream(long index, long length) {
+            checkNumeric(true);
+            checkRange(index, length);
+            return StreamSupport.longStream(new LongColumnSpliterator(this, index, index + length), false);
+        }
+
+        public DoubleStream doubleStream() {
+            return doubleStream(0, getSize());
+        }
+
+        public DoubleStream doubleStream(long index, long length) {
+            checkNumeric(false);
+            checkRange(index, length);
+            return StreamSupport.doubleStream(new DoubleColumnSpliterator(this, index, index + length), false);
+        }
+
+        public Stream<VarSlice> varStream() {
+            return varStream(0, getSize());
+        }
+
+        public Stream<VarSlice> varStream(long index, long length) {
+            if (type != ColumnType.BYTES && type != ColumnType.STRING) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkRange(index, length);
+            return StreamSupport.stream(new VarColumnSpliterator(this, index, index + length), false);
+        }
+
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                switch (type) {
+                    case BOOLEAN: return getBoolean(index).toString();
+
+                    case BYTES: {
+                        Formatter formatter = new Formatter();
+
+                        for (byte b : getVarBytes(index)) {
+                            formatter.format("%02x", b);
+                        }
+
+                        return formatter.toString();
+                    }
+
+                    case CHAR1: return getChar(index);
+                    case CHAR2: return getChar(index);
+                    case CHAR4: return getChar(index);
+                    case CHAR8: return getChar(index);
+                    case CHAR16: return getChar(index);
+                    case CHAR32: return getChar(index);
+                    case CHAR64: return getChar(index);
+                    case CHAR128: return getChar(index);
+                    case CHAR256: return getChar(index);
+                    case DATE: return DATE_FORMAT.format(getLocalDate(index));
+                    case DATETIME: return DATETIME_FORMAT.format(getLocalDateTime(index));
+                    case DECIMAL: return Decimal.toString(data.readLong(index * 8));
+                    case DOUBLE: return getDouble(index).toString();
+                    case FLOAT: return getFloat(index).toString();
+                    case INT: return getInt(index).toString();
+                    case INT8: return getByte(index).toString();
+                    case INT16: return getShort(index).toString();
+                    case IPV4: return getInet4Address(index).getHostAddress();
+                    case LONG: return getLong(index).toString();
+                    case STRING: return getVarString(index);
+                    case TIME: return TIME_FORMAT.format(getLocalTime(index));
+                    case TIMESTAMP: return getLong(index).toString();
+                    case ULONG: return Unsigned.toString(data.readLong(index * 8));
+                    case UUID: return getUUID(index).toString();
+                    default: throw new IllegalStateException("Invalid data type");
+                }
+            }
+        }
+
+        private void readAsLongs(long index, int length, long[] values, Scratch scratch) {
+            switch (type) {
+                case BOOLEAN:
+                case INT8: {
+                    byte[] bytes = scratch.bytes();
+                    data.read(index, bytes, 0, length);
+
+                    for (int i = 0; i < length; i++) {
+                        values[i] = bytes[i];
+                    }
+
+                    break;
+                }
+
+                case INT16: {
+                    short[] shorts = scratch.shorts();
+                    data.read(index * 2, shorts, 0, length);
+
+                    for (int i = 0; i < length; i++) {
+                        values[i] = shorts[i];
+                    }
+
+                    break;
+                }
+
+                case DATE:
+                case INT:
+                case IPV4:
+                case TIME: {
+                    int[] ints = scratch.ints();
+                    data.read(index * 4, ints, 0, length);
+
+                    for (int i = 0; i < length; i++) {
+                        values[i] = ints[i];
+                    }
+
+                    break;
+                }
+
+                case DATETIME:
+                case DECIMAL:
+                case LONG:
+                case TIMESTAMP:
+                case ULONG:
+                    data.read(index * 8, values, 0, length);
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+        }
+
+        private void readAsInts(long index, int length, int[] values, Scratch scratch) {
+            switch (type) {
+                case BOOLEAN:
+                case INT8: {
+                    byte[] bytes = scratch.bytes();
+                    data.read(index, bytes, 0, length);
+
+                    for (int i = 0; i < length; i++) {
+                        values[i] = bytes[i];
+                    }
+
+                    break;
+                }
+
+                case INT16: {
+                    short[] shorts = scratch.shorts();
+                    data.read(index * 2, shorts, 0, length);
+
+                    for (int i = 0; i < length; i++) {
+                        values[i] = shorts[i];
+                    }
+
+                    break;
+                }
+
+                case DATE:
+                case INT:
+                case IPV4:
+                case TIME:
+                    data.read(index * 4, values, 0, length);
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+        }
+
+        private void readAsDoubles(long index, int length, double[] values, Scratch scratch) {
+            switch (type) {
+                case DOUBLE:
+                    data.read(index * 8, values, 0, length);
+                    break;
+
+                case FLOAT: {
+                    float[] floats = scratch.floats();
+                    data.read(index * 4, floats, 0, length);
+
+                    for (int i = 0; i < length; i++) {
+                        values[i] = floats[i];
+                    }
+
+                    break;
+                }
+
+                case DECIMAL: {
+                    long[] longs = scratch.longs();
+                    data.read(index * 8, longs, 0, length);
+
+                    for (int i = 0; i < length; i++) {
+                        values[i] = longs[i] / 10000.0;
+                    }
+
+                    break;
+                }
+
+                case ULONG: {
+                    long[] longs = scratch.longs();
+                    data.read(index * 8, longs, 0, length);
+
+                    for (int i = 0; i < length; i++) {
+                        values[i] = Unsigned.toDouble(longs[i]);
+                    }
+
+                    break;
+                }
+
+                default: {
+                    long[] longs = scratch.longs();
+                    readAsLongs(index, length, longs, scratch);
+
+                    for (int i = 0; i < length; i++) {
+                        values[i] = longs[i];
+                    }
+                }
+            }
+        }
+
+        private void gatherAsLongs(long[] rows, int offset, int length, long[] values) {
+            switch (type) {
+                case BOOLEAN:
+                case INT8:
+                    for (int i = 0; i < length; i++) {
+                        values[i] = data.readByte(rows[offset + i]);
+                    }
+
+                    break;
+
+                case INT16:
+                    for (int i = 0; i < length; i++) {
+                        values[i] = data.readShort(rows[offset + i] * 2);
+                    }
+
+                    break;
+
+                case DATE:
+                case INT:
+                case IPV4:
+                case TIME:
+                    for (int i = 0; i < length; i++) {
+                        values[i] = data.readInt(rows[offset + i] * 4);
+                    }
+
+                    break;
+
+                case DATETIME:
+                case DECIMAL:
+                case LONG:
+                case TIMESTAMP:
+                case ULONG:
+                    for (int i = 0; i < length; i++) {
+                        values[i] = data.readLong(rows[offset + i] * 8);
+                    }
+
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+        }
+
+        private void gatherAsDoubles(long[] rows, int offset, int length, double[] values, Scratch scratch) {
+            switch (type) {
+                case DOUBLE:
+                    for (int i = 0; i < length; i++) {
+                        values[i] = data.readDouble(rows[offset + i] * 8);
+                    }
+
+                    break;
+
+                case FLOAT:
+                    for (int i = 0; i < length; i++) {
+                        values[i] = data.readFloat(rows[offset + i] * 4);
+                    }
+
+                    break;
+
+                case DECIMAL:
+                    for (int i = 0; i < length; i++) {
+                        values[i] = data.readLong(rows[offset + i] * 8) / 10000.0;
+                    }
+
+                    break;
+
+                case ULONG:
+                    for (int i = 0; i < length; i++) {
+                        values[i] = Unsigned.toDouble(data.readLong(rows[offset + i] * 8));
+                    }
+
+                    break;
+
+                default: {
+                    long[] longs = scratch.longs();
+                    gatherAsLongs(rows, offset, length, longs);
+
+                    for (int i = 0; i < length; i++) {
+                        values[i] = longs[i];
+                    }
+                }
+            }
+        }
+
+        private void readNullFlags(long index, long[] rows, int offset, int length, byte[] values) {
+            if (!isNullable) {
+                Arrays.fill(values, 0, length, (byte)0);
+            } else if (rows == null) {
+                nulls.read(index, values, 0, length);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    values[i] = nulls.readByte(rows[offset + i]);
+                }
+            }
+        }
+
+        private void checkRows(long[] rows, int offset, int length) {
+            checkArray(rows.length, offset, length);
+
+            for (int i = offset; i < offset + length; i++) {
+                checkIndex(rows[i]);
+            }
+        }
+
+        // DATE, DATETIME, TIME and IPV4 values are stored packed and DECIMAL
+        // values scaled, so their raw storage has no meaningful numeric value;
+        // DECIMAL is read as its decimal value, which only a double can hold
+        void checkNumeric(boolean isLong) {
+            switch (type) {
+                case BOOLEAN:
+                case INT:
+                case INT8:
+                case INT16:
+                case LONG:
+                case TIMESTAMP:
+                case ULONG:
+                    break;
+
+                case DECIMAL:
+                case DOUBLE:
+                case FLOAT:
+                    if (isLong) {
+                        throw new IllegalStateException("Incompatible data type");
+                    }
+
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+        }
+
+        private long[] aggregateLongs(long index, long[] rows, int offset, long length) {
+            checkNumeric(true);
+            Scratch scratch = new Scratch();
+            long[] values = scratch.longs();
+            byte[] nullFlags = new byte[Scratch.BLOCK_SIZE];
+            long count = 0;
+            long sum = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            long bias = type == ColumnType.ULONG ? Long.MIN_VALUE : 0;
+
+            for (long i = 0; i < length; i += Scratch.BLOCK_SIZE) {
+                int blockLength = (int)Math.min(length - i, Scratch.BLOCK_SIZE);
+
+                if (rows == null) {
+                    readAsLongs(index + i, blockLength, values, scratch);
+                } else {
+                    gatherAsLongs(rows, offset + (int)i, blockLength, values);
+                }
+
+                if (bias != 0) {
+                    for (int j = 0; j < blockLength; j++) {
+                        values[j] ^= bias;
+                    }
+                }
+
+                if (!isNullable) {
+                    for (int j = 0; j < blockLength; j++) {
+                        long value = values[j];
+                        sum += value;
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+
+                    count += blockLength;
+                } else {
+                    readNullFlags(index + i, rows, offset + (int)i, blockLength, nullFlags);
+
+                    for (int j = 0; j < blockLength; j++) {
+                        long value = values[j];
+                        boolean isValid = nullFlags[j] == 0;
+                        sum += isValid ? value : 0;
+                        min = isValid ? Math.min(min, value) : min;
+                        max = isValid ? Math.max(max, value) : max;
+                        count += isValid ? 1 : 0;
+                    }
+                }
+            }
+
+            return new long[] { count, sum - count * bias, min ^ bias, max ^ bias };
+        }
+
+        private double[] aggregateDoubles(long index, long[] rows, int offset, long length) {
+            checkNumeric(false);
+            Scratch scratch = new Scratch();
+            double[] values = scratch.doubles();
+            byte[] nullFlags = new byte[Scratch.BLOCK_SIZE];
+            long count = 0;
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+
+            for (long i = 0; i < length; i += Scratch.BLOCK_SIZE) {
+                int blockLength = (int)Math.min(length - i, Scratch.BLOCK_SIZE);
+
+                if (rows == null) {
+                    readAsDoubles(index + i, blockLength, values, scratch);
+                } else {
+                    gatherAsDoubles(rows, offset + (int)i, blockLength, values, scratch);
+                }
+
+                readNullFlags(index + i, rows, offset + (int)i, blockLength, nullFlags);
+
+                for (int j = 0; j < blockLength; j++) {
+                    double value = values[j];
+                    boolean isValid = nullFlags[j] == 0;
+                    sum += isValid ? value : 0;
+                    min = isValid ? Math.min(min, value) : min;
+                    max = isValid ? Math.max(max, value) : max;
+                    count += isValid ? 1 : 0;
+                }
+            }
+
+            return new double[] { count, sum, min, max };
+        }
+
+        protected boolean isGrowing() {
+            return false;
+        }
+
+        private ByteBuffer buffer(MappedFile file, long pos, long length) {
+            // Buffers wrap the current mapping, which implicit growth may move
+            if (isGrowing()) {
+                throw new IllegalStateException("Column " + name + " is auto-growing and cannot be viewed as a buffer");
+            }
+
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Column " + name + " is too large for a single buffer");
+            }
+
+            ByteBuffer result = file.getBuffer(pos, length);
+
+            if (!isWritable) {
+                result = result.asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+            }
+
+            return result;
+        }
+
+        private int packedCharWords() {
+            switch (type) {
+                case CHAR1:
+                case CHAR2:
+                case CHAR4:
+                case CHAR8:
+                    return 1;
+
+                case CHAR16:
+                    return 2;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+        }
+
+        static int decodeDate(int value) {
+            return epochDay(1900 + (value >> 21), (value >> 17) & 0b1111, (value >> 12) & 0b11111);
+        }
+
+        static int encodeDate(long epochDay) {
+            long z = epochDay + 719468;
+            long era = Math.floorDiv(z, 146097);
+            long dayOfEra = z - era * 146097;
+            long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+            long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            long monthIndex = (5 * dayOfYear + 2) / 153;
+            int day = (int)(dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+            int month = (int)(monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+            int year = (int)(yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+            return ((year - 1900) << 21) | (month << 17) | (day << 12);
+        }
+
+        static long decodeDateTime(long value) {
+            long epochDay = epochDay(1900 + (int)(value >> 53),
+                    (int)((value >> 49) & 0b1111),
+                    (int)((value >> 44) & 0b11111));
+            return epochDay * MILLIS_PER_DAY
+                    + ((value >> 39) & 0b11111) * 3600000
+                    + ((value >> 33) & 0b111111) * 60000
+                    + ((value >> 27) & 0b111111) * 1000
+                    + ((value >> 17) & 0b1111111111);
+        }
+
+        static long encodeDateTime(long epochMillis) {
+            long date = encodeDate(Math.floorDiv(epochMillis, MILLIS_PER_DAY));
+            int millis = (int)Math.floorMod(epochMillis, MILLIS_PER_DAY);
+            return ((date >> 21) << 53)
+                    | (((date >> 17) & 0b1111) << 49)
+                    | (((date >> 12) & 0b11111) << 44)
+                    | ((long)(millis / 3600000) << 39)
+                    | ((long)(millis / 60000 % 60) << 33)
+                    | ((long)(millis / 1000 % 60) << 27)
+                    | ((long)(millis % 1000) << 17);
+        }
+
+        static int decodeTime(int value) {
+            return (value >> 26) * 3600000
+                    + ((value >> 20) & 0b111111) * 60000
+                    + ((value >> 14) & 0b111111) * 1000
+                    + ((value >> 4) & 0b1111111111);
+        }
+
+        static int encodeTime(long millisOfDay) {
+            int millis = (int)millisOfDay;
+            return ((millis / 3600000) << 26)
+                    | ((millis / 60000 % 60) << 20)
+                    | ((millis / 1000 % 60) << 14)
+                    | ((millis % 1000) << 4);
+        }
+
+        private static int epochDay(int year, int month, int day) {
+            year -= month <= 2 ? 1 : 0;
+            int era = Math.floorDiv(year, 400);
+            int yearOfEra = year - era * 400;
+            int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+            int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            return era * 146097 + dayOfEra - 719468;
+        }
+
+        protected long varEnd(long index) {
+            return index < size - 1 ? data.readLong((index + 1) * 8) : varData.getSize();
+        }
+
+        protected int varSize(long index, long position, int terminatorSize) {
+            long valueSize = varEnd(index) - position - terminatorSize;
+
+            if (valueSize > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Value too large: " + valueSize + " bytes");
+            }
+
+            return (int)valueSize;
+        }
+
+        protected void checkIndex(long index) {
+            if (index < 0 || index >= getSize()) {
+                throw new IndexOutOfBoundsException("Invalid index specified");
+            }
+        }
+
+        protected void checkRange(long index, long length) {
+            if (index < 0 || length < 0 || index > getSize() - length) {
+                throw new IndexOutOfBoundsException("Invalid index specified");
+            }
+        }
+
+        protected static void checkArray(int arrayLength, int offset, int length) {
+            if (offset < 0 || length < 0 || offset > arrayLength - length) {
+                throw new IndexOutOfBoundsException("Invalid array offset or length specified");
+            }
+        }
+    }
+
+    public static class InputColumn extends Column {
+        private InputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file, false);
+        }
+
+        private static InputColumn create(String name, ColumnType type, MappedFile file) {
+            switch (type) {
+                case BOOLEAN: return new BooleanInputColumn(name, type, file);
+                case BYTES: return new VarBytesInputColumn(name, type, file);
+                case CHAR1: return new CharNInputColumn(name, type, file);
+                case CHAR2: return new CharNInputColumn(name, type, file);
+                case CHAR4: return new CharNInputColumn(name, type, file);
+                case CHAR8: return new CharNInputColumn(name, type, file);
+                case CHAR16: return new CharNInputColumn(name, type, file);
+                case CHAR32: return new CharNInputColumn(name, type, file);
+                case CHAR64: return new CharNInputColumn(name, type, file);
+                case CHAR128: return new CharNInputColumn(name, type, file);
+                case CHAR256: return new CharNInputColumn(name, type, file);
+                case DATE: return new DateInputColumn(name, type, file);
+                case DATETIME: return new DateTimeInputColumn(name, type, file);
+                case DECIMAL: return new DecimalInputColumn(name, type, file);
+                case DOUBLE: return new DoubleInputColumn(name, type, file);
+                case FLOAT: return new FloatInputColumn(name, type, file);
+                case INT: return new IntInputColumn(name, type, file);
+                case INT8: return new ByteInputColumn(name, type, file);
+                case INT16: return new ShortInputColumn(name, type, file);
+                case IPV4: return new IPv4InputColumn(name, type, file);
+                case LONG: return new LongInputColumn(name, type, file);
+                case STRING: return new VarStringInputColumn(name, type, file);
+                case TIME: return new TimeInputColumn(name, type, file);
+                case TIMESTAMP: return new LongInputColumn(name, type, file);
+                case ULONG: return new UnsignedLongInputColumn(name, type, file);
+                case UUID: return new UUIDInputColumn(name, type, file);
+                default: return new InputColumn(name, type, file);
+            }
+        }
+    }
+
+    public static class OutputColumn extends Column {
+        private static final int COPY_BLOCK_SIZE = 4096;
+        private static final int ENCODE_BUFFER_SIZE = 256;
+        private static final String GROWTH_FACTOR_PROPERTY = "kinetica.proc.growthFactor";
+        private static final String MIN_GROWTH_PROPERTY = "kinetica.proc.minGrowth";
+        private static final double DEFAULT_GROWTH_FACTOR = Double.parseDouble(System.getProperty(GROWTH_FACTOR_PROPERTY, "1.5"));
+        private static final long DEFAULT_MIN_GROWTH = Long.getLong(MIN_GROWTH_PROPERTY, 1 << 20);
+
+        private static final long MIN_AUTO_GROW_SIZE = 1024;
+
+        protected long pos;
+        protected byte[] encodeBuffer;
+        private boolean isAutoGrow;
+        private long limit;
+        private long nullsDirtyEnd;
+
+        private OutputColumn(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable) {
+            super(name, type, data, nulls, varData, nullable, true);
+
+            if (type == ColumnType.BYTES || type == ColumnType.STRING) {
+                setGrowthPolicy(DEFAULT_GROWTH_FACTOR, DEFAULT_MIN_GROWTH);
+            }
+
+            // Null flags past this point are known to be zero, so marking
+            // those rows not null needs no write
+            nullsDirtyEnd = isNullable ? nulls.getSize() : 0;
+        }
+
+        public void setGrowthPolicy(double factor, long minGrowth) {
+            if (type != ColumnType.BYTES && type != ColumnType.STRING) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!(factor >= 1.0) || minGrowth < 0) {
+                throw new IllegalArgumentException("Invalid growth policy specified");
+            }
+
+            varData.setGrowthPolicy(factor, minGrowth);
+        }
+
+        public void reserveVarData(long length) {
+            if (type != ColumnType.BYTES && type != ColumnType.STRING) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (length < 0) {
+                throw new IllegalArgumentException("Invalid length specified");
+            }
+
+            varData.reserve(length);
+        }
+
+        public long getRemapCount() {
+            return data.getRemapCount() + nulls.getRemapCount() + varData.getRemapCount();
+        }
+
+        private static OutputColumn create(String name, ColumnType type, MappedFile file) {
+            String dataPath = file.readString();
+            String nullsPath = file.readString();
+            String varDataPath = file.readString();
+            return create(name, type, open(dataPath, true), open(nullsPath, true), open(varDataPath, true), !nullsPath.isEmpty());
+        }
+
+        private static OutputColumn create(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable) {
+            switch (type) {
+                case BOOLEAN: return new BooleanOutputColumn(name, type, data, nulls, varData, nullable);
+                case DATE: return new IntOutputColumn(name, type, data, nulls, varData, nullable);
+                case DATETIME: return new LongOutputColumn(name, type, data, nulls, varData, nullable);
+                case DECIMAL: return new LongOutputColumn(name, type, data, nulls, varData, nullable);
+                case DOUBLE: return new DoubleOutputColumn(name, type, data, nulls, varData, nullable);
+                case FLOAT: return new FloatOutputColumn(name, type, data, nulls, varData, nullable);
+                case INT: return new IntOutputColumn(name, type, data, nulls, varData, nullable);
+                case INT8: return new ByteOutputColumn(name, type, data, nulls, varData, nullable);
+                case INT16: return new ShortOutputColumn(name, type, data, nulls, varData, nullable);
+                case IPV4: return new IntOutputColumn(name, type, data, nulls, varData, nullable);
+                case LONG: return new LongOutputColumn(name, type, data, nulls, varData, nullable);
+                case TIME: return new IntOutputColumn(name, type, data, nulls, varData, nullable);
+                case TIMESTAMP: return new LongOutputColumn(name, type, data, nulls, varData, nullable);
+                case ULONG: return new LongOutputColumn(name, type, data, nulls, varData, nullable);
+                case UUID: return new UUIDOutputColumn(name, type, data, nulls, varData, nullable);
+                default: return new OutputColumn(name, type, data, nulls, varData, nullable);
+            }
+        }
+
+        public void setNull(long index) {
+            if (!isNullable) {
+                throw new IllegalStateException("Column " + name + " is not nullable");
+            }
+
+            checkWriteRange(index, 1);
+            nulls.writeByte(index, (byte)1);
+            nullsDirtyEnd = Math.max(nullsDirtyEnd, index + 1);
+        }
+
+        public void setNulls(long index, long length) {
+            if (!isNullable) {
+                throw new IllegalStateException("Column " + name + " is not nullable");
+            }
+
+            checkWriteRange(index, length);
+            nulls.fill(index, (byte)1, length);
+            nullsDirtyEnd = Math.max(nullsDirtyEnd, index + length);
+        }
+
+        public void clearNulls(long index, long length) {
+            checkWriteRange(index, length);
+            clearNullFlags(index, length);
+        }
+
+        public void setNulls(long index, long length, long[] bitmap) {
+            if ((length + 63) / 64 > bitmap.length) {
+                throw new IndexOutOfBoundsException("Invalid bitmap length specified");
+            }
+
+            checkWriteRange(index, length);
+            byte[] nullFlags = new byte[(int)Math.min(length, COPY_BLOCK_SIZE)];
+            boolean hasNulls = false;
+
+            for (long i = 0; i < length; i += nullFlags.length) {
+                int count = (int)Math.min(length - i, nullFlags.length);
+                byte any = 0;
+
+                for (int j = 0; j < count; j++) {
+                    long bit = i + j;
+                    nullFlags[j] = (byte)((bitmap[(int)(bit >>> 6)] >>> (bit & 63)) & 1);
+                    any |= nullFlags[j];
+                }
+
+                if (any != 0) {
+                    if (!isNullable) {
+                        throw new IllegalStateException("Column " + name + " is not nullable");
+                    }
+
+                    nulls.write(index + i, nullFlags, 0, count);
+                    hasNulls = true;
+                } else {
+                    clearNullFlags(index + i, count);
+                }
+            }
+
+            if (hasNulls) {
+                nullsDirtyEnd = Math.max(nullsDirtyEnd, index + length);
+            }
+        }
+
+        public void setNulls(long index, int length, BitSet bits) {
+            long[] bitmap = bits.toLongArray();
+            int wordCount = (length + 63) / 64;
+            setNulls(index, length, bitmap.length >= wordCount ? bitmap : Arrays.copyOf(bitmap, wordCount));
+        }
+
+        private void clearNullFlags(long index, long length) {
+            if (isNullable && index < nullsDirtyEnd) {
+                nulls.fill(index, (byte)0, Math.min(length, nullsDirtyEnd - index));
+            }
+        }
+
+        protected void checkWriteRange(long index, long length) {
+            if (isAutoGrow && index >= 0 && length >= 0 && index + length > size) {
+                reserve(Math.max(index + length, Math.max(size + (size >> 1), MIN_AUTO_GROW_SIZE)));
+            }
+
+            checkCapacity(index, length);
+
+            // Written rows are tracked even without auto-grow, so that turning
+            // it on later keeps them
+            limit = Math.max(limit, index + length);
+            nullCount = -1;
+        }
+
+        // Reads are bounded by getSize(), which under auto-grow excludes the
+        // reserved rows not yet written; writes may use the whole reservation
+        private void checkCapacity(long index, long length) {
+            if (index < 0 || length < 0 || index > size - length) {
+                throw new IndexOutOfBoundsException("Invalid index specified");
+            }
+        }
+
+        private void checkCharType() {
+            switch (type) {
+                case CHAR1:
+                case CHAR2:
+                case CHAR4:
+                case CHAR8:
+                case CHAR16:
+                case CHAR32:
+                case CHAR64:
+                case CHAR128:
+                case CHAR256:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+        }
+
+        protected byte[] encodeBuffer(int capacity) {
+            if (encodeBuffer == null) {
+                encodeBuffer = new byte[Math.max(capacity, ENCODE_BUFFER_SIZE)];
+            } else if (encodeBuffer.length < capacity) {
+                encodeBuffer = Arrays.copyOf(encodeBuffer, Math.max(capacity, encodeBuffer.length * 2));
+            }
+
+            return encodeBuffer;
+        }
+
+        protected int encode(CharSequence value, int start, int end, int extra) {
+            return encode(value, start, end, 0, extra);
+        }
+
+        protected int encode(char[] value, int offset, int length, int extra) {
+            return encode(value, offset, length, 0, extra);
+        }
+
+        // Encodes value as UTF-8 into encodeBuffer at position with extra
+        // zeroed bytes after it, replacing unpaired surrogates with '?' as
+        // String.getBytes does, and returns the end of the encoded bytes
+        protected int encode(CharSequence value, int start, int end, int position, int extra) {
+            byte[] buffer = encodeBuffer(position + (end - start) * 3 + extra);
+
+            for (int i = start; i < end; i++) {
+                char c = value.charAt(i);
+
+                if (c < 0x80) {
+                    buffer[position++] = (byte)c;
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    position = encodeCodePoint(Character.toCodePoint(c, value.charAt(++i)), buffer, position);
+                } else {
+                    position = encodeCodePoint(c, buffer, position);
+                }
+            }
+
+            for (int i = 0; i < extra; i++) {
+                buffer[position + i] = 0;
+            }
+
+            return position;
+        }
+
+        protected int encode(char[] value, int offset, int length, int position, int extra) {
+            byte[] buffer = encodeBuffer(position + length * 3 + extra);
+            int end = offset + length;
+
+            for (int i = offset; i < end; i++) {
+                char c = value[i];
+
+                if (c < 0x80) {
+                    buffer[position++] = (byte)c;
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value[i + 1])) {
+                    position = encodeCodePoint(Character.toCodePoint(c, value[++i]), buffer, position);
+                } else {
+                    position = encodeCodePoint(c, buffer, position);
+                }
+            }
+
+            for (int i = 0; i < extra; i++) {
+                buffer[position + i] = 0;
+            }
+
+            return position;
+        }
+
+        private static int encodeCodePoint(int codePoint, byte[] buffer, int position) {
+            if (codePoint < 0x80) {
+                buffer[position++] = (byte)codePoint;
+            } else if (codePoint < 0x800) {
+                buffer[position++] = (byte)(0xC0 | (codePoint >> 6));
+                buffer[position++] = (byte)(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate((char)codePoint) && codePoint < 0x10000) {
+                buffer[position++] = '?';
+            } else if (codePoint < 0x10000) {
+                buffer[position++] = (byte)(0xE0 | (codePoint >> 12));
+                buffer[position++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte)(0x80 | (codePoint & 0x3F));
+            } else {
+                buffer[position++] = (byte)(0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte)(0x80 | (codePoint & 0x3F));
+            }
+
+            return position;
+        }
+
+        protected boolean handleNull(long index, Object value) {
+            if (value == null) {
+                setNull(index);
+                return true;
+            } else {
+                handleNotNull(index);
+                return false;
+            }
+        }
+
+        protected void handleNotNull(long index) {
+            checkWriteRange(index, 1);
+
+            if (isNullable && index < nullsDirtyEnd) {
+                nulls.writeByte(index, (byte)0);
+            }
+        }
+
+        private void handleNulls(long index, boolean[] nullFlags, int offset, int length) {
+            checkWriteRange(index, length);
+
+            if (nullFlags == null) {
+                clearNullFlags(index, length);
+            } else {
+                checkArray(nullFlags.length, offset, length);
+
+                if (isNullable) {
+                    nulls.write(index, nullFlags, offset, length);
+                    nullsDirtyEnd = Math.max(nullsDirtyEnd, index + length);
+                } else {
+                    for (int i = offset; i < offset + length; i++) {
+                        if (nullFlags[i]) {
+                            throw new IllegalStateException("Column " + name + " is not nullable");
+                        }
+                    }
+                }
+            }
+        }
+
+        public void setBigDecimal(long index, BigDecimal value) {
+            if (type != ColumnType.DECIMAL) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeLong(index * 8, value.movePointRight(Decimal.SCALE).longValueExact());
+            }
+        }
+
+        public void setUnsignedLong(long index, long value) {
+            if (type != ColumnType.ULONG) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            handleNotNull(index);
+            data.writeLong(index * 8, value);
+        }
+
+        public void setUnsignedLongs(long index, long[] values, int offset, int length) {
+            setUnsignedLongs(index, values, null, offset, length);
+        }
+
+        public void setUnsignedLongs(long index, long[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.ULONG) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            setLongs(index, values, nullFlags, offset, length);
+        }
+
+        public void setUnscaledDecimal(long index, long value) {
+            if (type != ColumnType.DECIMAL) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            handleNotNull(index);
+            data.writeLong(index * 8, value);
+        }
+
+        public void setUnscaledDecimals(long index, long[] values, int offset, int length) {
+            setUnscaledDecimals(index, values, null, offset, length);
+        }
+
+        public void setUnscaledDecimals(long index, long[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.DECIMAL) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            setLongs(index, values, nullFlags, offset, length);
+        }
+
+        public void setBigInteger(long index, BigInteger value) {
+            if (type != ColumnType.LONG && type != ColumnType.ULONG) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeLong(index * 8, value.longValue());
+            }
+        }
+
+        public void setBoolean(long index, Boolean value) {
+            if (type != ColumnType.BOOLEAN) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeByte(index, value ? (byte)1 : (byte)0);
+            }
+        }
+
+        public void setByte(long index, Byte value) {
+            if (type != ColumnType.INT8) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeByte(index, value);
+            }
+        }
+
+        public void setCalendar(long index, Calendar value) {
+            switch (type) {
+                case DATE:
+                    if (!handleNull(index, value)) {
+                        data.writeInt(index * 4, encodeDate(Math.floorDiv(value.getTimeInMillis(), MILLIS_PER_DAY)));
+                    }
+
+                    break;
+
+                case DATETIME:
+                    if (!handleNull(index, value)) {
+                        data.writeLong(index * 8, encodeDateTime(value.getTimeInMillis()));
+                    }
+
+                    break;
+
+                case TIME:
+                    if (!handleNull(index, value)) {
+                        data.writeInt(index * 4, encodeTime(Math.floorMod(value.getTimeInMillis(), MILLIS_PER_DAY)));
+                    }
+
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+        }
+
+        public void setEpochDay(long index, int value) {
+            if (type != ColumnType.DATE) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkEpochDay(value);
+            handleNotNull(index);
+            data.writeInt(index * 4, encodeDate(value));
+        }
+
+        public void setEpochDays(long index, int[] values, int offset, int length) {
+            setEpochDays(index, values, null, offset, length);
+        }
+
+        public void setEpochDays(long index, int[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.DATE) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+
+            if (nullFlags != null) {
+                checkArray(nullFlags.length, offset, length);
+            }
+
+            for (int i = offset; i < offset + length; i++) {
+                if (nullFlags == null || !nullFlags[i]) {
+                    checkEpochDay(values[i]);
+                }
+            }
+
+            handleNulls(index, nullFlags, offset, length);
+            int[] block = new int[Math.min(length, COPY_BLOCK_SIZE)];
+
+            for (int i = 0; i < length; i += block.length) {
+                int count = Math.min(length - i, block.length);
+
+                for (int j = 0; j < count; j++) {
+                    int k = offset + i + j;
+                    block[j] = nullFlags != null && nullFlags[k] ? 0 : encodeDate(values[k]);
+                }
+
+                data.write((index + i) * 4, block, 0, count);
+            }
+        }
+
+        public void setEpochMillis(long index, long value) {
+            if (type != ColumnType.DATETIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkEpochDay(Math.floorDiv(value, MILLIS_PER_DAY));
+            handleNotNull(index);
+            data.writeLong(index * 8, encodeDateTime(value));
+        }
+
+        public void setEpochMillis(long index, long[] values, int offset, int length) {
+            setEpochMillis(index, values, null, offset, length);
+        }
+
+        public void setEpochMillis(long index, long[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.DATETIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+
+            if (nullFlags != null) {
+                checkArray(nullFlags.length, offset, length);
+            }
+
+            for (int i = offset; i < offset + length; i++) {
+                if (nullFlags == null || !nullFlags[i]) {
+                    checkEpochDay(Math.floorDiv(values[i], MILLIS_PER_DAY));
+                }
+            }
+
+            handleNulls(index, nullFlags, offset, length);
+            long[] block = new long[Math.min(length, COPY_BLOCK_SIZE)];
+
+            for (int i = 0; i < length; i += block.length) {
+                int count = Math.min(length - i, block.length);
+
+                for (int j = 0; j < count; j++) {
+                    int k = offset + i + j;
+                    block[j] = nullFlags != null && nullFlags[k] ? 0 : encodeDateTime(values[k]);
+                }
+
+                data.write((index + i) * 8, block, 0, count);
+            }
+        }
+
+        public void setMillisOfDay(long index, int value) {
+            if (type != ColumnType.TIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkMillisOfDay(value);
+            handleNotNull(index);
+            data.writeInt(index * 4, encodeTime(value));
+        }
+
+        public void setMillisOfDays(long index, int[] values, int offset, int length) {
+            setMillisOfDays(index, values, null, offset, length);
+        }
+
+        public void setMillisOfDays(long index, int[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.TIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+
+            if (nullFlags != null) {
+                checkArray(nullFlags.length, offset, length);
+            }
+
+            for (int i = offset; i < offset + length; i++) {
+                if (nullFlags == null || !nullFlags[i]) {
+                    checkMillisOfDay(values[i]);
+                }
+            }
+
+            handleNulls(index, nullFlags, offset, length);
+            int[] block = new int[Math.min(length, COPY_BLOCK_SIZE)];
+
+            for (int i = 0; i < length; i += block.length) {
+                int count = Math.min(length - i, block.length);
+
+                for (int j = 0; j < count; j++) {
+                    int k = offset + i + j;
+                    block[j] = nullFlags != null && nullFlags[k] ? 0 : encodeTime(values[k]);
+                }
+
+                data.write((index + i) * 4, block, 0, count);
+            }
+        }
+
+        static void checkEpochDay(long epochDay) {
+            if (epochDay < MIN_EPOCH_DAY || epochDay > MAX_EPOCH_DAY) {
+                throw new IllegalArgumentException("Invalid date specified");
+            }
+        }
+
+        static void checkMillisOfDay(long millisOfDay) {
+            if (millisOfDay < 0 || millisOfDay >= MILLIS_PER_DAY) {
+                throw new IllegalArgumentException("Invalid time of day specified");
+            }
+        }
+
+        public void setLocalDate(long index, LocalDate value) {
+            if (type != ColumnType.DATE) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (value != null) {
+                checkEpochDay(value.toEpochDay());
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeInt(index * 4,
+                        ((value.getYear() - 1900) << 21)
+                        | (value.getMonthValue() << 17)
+                        | (value.getDayOfMonth() << 12));
+            }
+        }
+
+        public void setLocalDateTime(long index, LocalDateTime value) {
+            if (type != ColumnType.DATETIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (value != null) {
+                checkEpochDay(value.toLocalDate().toEpochDay());
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeLong(index * 8,
+                        (((long)value.getYear() - 1900) << 53)
+                        | ((long)value.getMonthValue() << 49)
+                        | ((long)value.getDayOfMonth() << 44)
+                        | ((long)value.getHour() << 39)
+                        | ((long)value.getMinute() << 33)
+                        | ((long)value.getSecond() << 27)
+                        | ((long)(value.getNano() / 1000000) << 17));
+            }
+        }
+
+        public void setLocalTime(long index, LocalTime value) {
+            if (type != ColumnType.TIME) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeInt(index * 4,
+                        (value.getHour() << 26)
+                        | (value.getMinute() << 20)
+                        | (value.getSecond() << 14)
+                        | ((value.getNano() / 1000000) << 4));
+            }
+        }
+
+        public void setChar(long index, String value) {
+            setChar(index, (CharSequence)value);
+        }
+
+        public void setChar(long index, CharSequence value) {
+            checkCharType();
+
+            if (!handleNull(index, value)) {
+                int length = encode(value, 0, value.length(), 0);
+                writeCharValue(index, encodeBuffer, length);
+            }
+        }
+
+        public void setChar(long index, char[] value, int offset, int length) {
+            checkCharType();
+            checkArray(value.length, offset, length);
+            handleNotNull(index);
+            int encodedLength = encode(value, offset, length, 0);
+            writeCharValue(index, encodeBuffer, encodedLength);
+        }
+
+        public void setCharUtf8(long index, byte[] value, int offset, int length) {
+            checkCharType();
+            checkArray(value.length, offset, length);
+            handleNotNull(index);
+
+            if (offset == 0) {
+                writeCharValue(index, value, length);
+            } else {
+                byte[] buffer = encodeBuffer(length);
+                System.arraycopy(value, offset, buffer, 0, length);
+                writeCharValue(index, buffer, length);
+            }
+        }
+
+        private void writeCharValue(long index, byte[] value, int length) {
+            int valueSize = type.getSize();
+            data.writeCharN(index * valueSize, value, length, valueSize);
+        }
+
+        public void setDouble(long index, Double value) {
+            if (type != ColumnType.DOUBLE) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeDouble(index * 8, value);
+            }
+        }
+
+        public void setFloat(long index, Float value) {
+            if (type != ColumnType.FLOAT) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeFloat(index * 4, value);
+            }
+        }
+
+        public void setInet4Address(long index, Inet4Address value) {
+            if (type != ColumnType.IPV4) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                byte[] buffer = value.getAddress();
+                data.writeInt(index * 4, (buffer[0] & 0xFF) << 24 | (buffer[1] & 0xFF) << 16 | (buffer[2] & 0xFF) << 8 | (buffer[3] & 0xFF));
+            }
+        }
+
+        public void setInt(long index, Integer value) {
+            switch (type) {
+                case DATE:
+                case INT:
+                case IPV4:
+                case TIME:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeInt(index * 4, value);
+            }
+        }
+
+        public void setLong(long index, Long value) {
+            switch (type) {
+                case DATETIME:
+                case DECIMAL:
+                case LONG:
+                case TIMESTAMP:
+                case ULONG:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeLong(index * 8, value);
+            }
+        }
+
+        public void setShort(long index, Short value) {
+            if (type != ColumnType.INT16) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeShort(index * 2, value);
+            }
+        }
+
+        public void setUUID(long index, UUID value) {
+            if (type != ColumnType.UUID) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (!handleNull(index, value)) {
+                data.writeLong(index * 16, value.getLeastSignificantBits());
+                data.writeLong(index * 16 + 8, value.getMostSignificantBits());
+            }
+        }
+
+        public void setBooleanValue(long index, boolean value) {
+            if (type != ColumnType.BOOLEAN) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            handleNotNull(index);
+            data.writeByte(index, value ? (byte)1 : (byte)0);
+        }
+
+        public void setByteValue(long index, byte value) {
+            if (type != ColumnType.INT8) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            handleNotNull(index);
+            data.writeByte(index, value);
+        }
+
+        public void setDoubleValue(long index, double value) {
+            if (type != ColumnType.DOUBLE) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            handleNotNull(index);
+            data.writeDouble(index * 8, value);
+        }
+
+        public void setFloatValue(long index, float value) {
+            if (type != ColumnType.FLOAT) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            handleNotNull(index);
+            data.writeFloat(index * 4, value);
+        }
+
+        public void setIntValue(long index, int value) {
+            switch (type) {
+                case DATE:
+                case INT:
+                case IPV4:
+                case TIME:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+
+            handleNotNull(index);
+            data.writeInt(index * 4, value);
+        }
+
+        public void setLongValue(long index, long value) {
+            switch (type) {
+                case DATETIME:
+                case DECIMAL:
+                case LONG:
+                case TIMESTAMP:
+                case ULONG:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+
+            handleNotNull(index);
+            data.writeLong(index * 8, value);
+        }
+
+        public void setShortValue(long index, short value) {
+            if (type != ColumnType.INT16) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            handleNotNull(index);
+            data.writeShort(index * 2, value);
+        }
+
+        public void setBooleans(long index, boolean[] values, int offset, int length) {
+            setBooleans(index, values, null, offset, length);
+        }
+
+        public void setBooleans(long index, boolean[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.BOOLEAN) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+            handleNulls(index, nullFlags, offset, length);
+            data.write(index, values, offset, length);
+        }
+
+        public void setBytes(long index, byte[] values, int offset, int length) {
+            setBytes(index, values, null, offset, length);
+        }
+
+        public void setBytes(long index, byte[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.INT8) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+            handleNulls(index, nullFlags, offset, length);
+            data.write(index, values, offset, length);
+        }
+
+        public void setDoubles(long index, double[] values, int offset, int length) {
+            setDoubles(index, values, null, offset, length);
+        }
+
+        public void setDoubles(long index, double[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.DOUBLE) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+            handleNulls(index, nullFlags, offset, length);
+            data.write(index * 8, values, offset, length);
+        }
+
+        public void setFloats(long index, float[] values, int offset, int length) {
+            setFloats(index, values, null, offset, length);
+        }
+
+        public void setFloats(long index, float[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.FLOAT) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+            handleNulls(index, nullFlags, offset, length);
+            data.write(index * 4, values, offset, length);
+        }
+
+        public void setInts(long index, int[] values, int offset, int length) {
+            setInts(index, values, null, offset, length);
+        }
+
+        public void setInts(long index, int[] values, boolean[] nullFlags, int offset, int length) {
+            switch (type) {
+                case DATE:
+                case INT:
+                case IPV4:
+                case TIME:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+            handleNulls(index, nullFlags, offset, length);
+            data.write(index * 4, values, offset, length);
+        }
+
+        public void setLongs(long index, long[] values, int offset, int length) {
+            setLongs(index, values, null, offset, length);
+        }
+
+        public void setLongs(long index, long[] values, boolean[] nullFlags, int offset, int length) {
+            switch (type) {
+                case DATETIME:
+                case DECIMAL:
+                case LONG:
+                case TIMESTAMP:
+                case ULONG:
+                    break;
+
+                default:
+                    throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+            handleNulls(index, nullFlags, offset, length);
+            data.write(index * 8, values, offset, length);
+        }
+
+        public void setShorts(long index, short[] values, int offset, int length) {
+            setShorts(index, values, null, offset, length);
+        }
+
+        public void setShorts(long index, short[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.INT16) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+            handleNulls(index, nullFlags, offset, length);
+            data.write(index * 2, values, offset, length);
+        }
+
+        public long appendBigDecimal(BigDecimal value) {
+            long index = pos;
+            setBigDecimal(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendUnsignedLong(long value) {
+            long index = pos;
+            setUnsignedLong(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendUnsignedLongs(long[] values, int offset, int length) {
+            return appendUnsignedLongs(values, null, offset, length);
+        }
+
+        public long appendUnsignedLongs(long[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.ULONG) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            return appendLongs(values, nullFlags, offset, length);
+        }
+
+        public long appendUnscaledDecimal(long value) {
+            long index = pos;
+            setUnscaledDecimal(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendUnscaledDecimals(long[] values, int offset, int length) {
+            return appendUnscaledDecimals(values, null, offset, length);
+        }
+
+        public long appendUnscaledDecimals(long[] values, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.DECIMAL) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            return appendLongs(values, nullFlags, offset, length);
+        }
+
+        public long appendBigInteger(BigInteger value) {
+            long index = pos;
+            setBigInteger(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendBoolean(Boolean value) {
+            long index = pos;
+            setBoolean(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendByte(Byte value) {
+            long index = pos;
+            setByte(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendCalendar(Calendar value) {
+            long index = pos;
+            setCalendar(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendChar(String value) {
+            long index = pos;
+            setChar(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendChar(CharSequence value) {
+            long index = pos;
+            setChar(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendChar(char[] value, int offset, int length) {
+            long index = pos;
+            setChar(pos, value, offset, length);
+            pos++;
+            return index;
+        }
+
+        public long appendCharUtf8(byte[] value, int offset, int length) {
+            long index = pos;
+            setCharUtf8(pos, value, offset, length);
+            pos++;
+            return index;
+        }
+
+        public long appendEpochDay(int value) {
+            long index = pos;
+            setEpochDay(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendEpochMillis(long value) {
+            long index = pos;
+            setEpochMillis(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendMillisOfDay(int value) {
+            long index = pos;
+            setMillisOfDay(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendEpochDays(int[] values, int offset, int length) {
+            return appendEpochDays(values, null, offset, length);
+        }
+
+        public long appendEpochDays(int[] values, boolean[] nullFlags, int offset, int length) {
+            long index = pos;
+            setEpochDays(pos, values, nullFlags, offset, length);
+            pos += length;
+            return index;
+        }
+
+        public long appendEpochMillis(long[] values, int offset, int length) {
+            return appendEpochMillis(values, null, offset, length);
+        }
+
+        public long appendEpochMillis(long[] values, boolean[] nullFlags, int offset, int length) {
+            long index = pos;
+            setEpochMillis(pos, values, nullFlags, offset, length);
+            pos += length;
+            return index;
+        }
+
+        public long appendMillisOfDays(int[] values, int offset, int length) {
+            return appendMillisOfDays(values, null, offset, length);
+        }
+
+        public long appendMillisOfDays(int[] values, boolean[] nullFlags, int offset, int length) {
+            long index = pos;
+            setMillisOfDays(pos, values, nullFlags, offset, length);
+            pos += length;
+            return index;
+        }
+
+        public long appendLocalDate(LocalDate value) {
+            long index = pos;
+            setLocalDate(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendLocalDateTime(LocalDateTime value) {
+            long index = pos;
+            setLocalDateTime(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendLocalTime(LocalTime value) {
+            long index = pos;
+            setLocalTime(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendDouble(Double value) {
+            long index = pos;
+            setDouble(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendFloat(Float value) {
+            long index = pos;
+            setFloat(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendInet4Address(Inet4Address value) {
+            long index = pos;
+            setInet4Address(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendInt(Integer value) {
+            long index = pos;
+            setInt(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendLong(Long value) {
+            long index = pos;
+            setLong(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendShort(Short value) {
+            long index = pos;
+            setShort(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendUUID(UUID value) {
+            long index = pos;
+            setUUID(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendVarBytes(byte[] value) {
+            if (type != ColumnType.BYTES) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (value == null) {
+                return appendNullVarValue();
+            } else {
+                return appendVarValue(value, 0, value.length, false);
+            }
+        }
+
+        public long appendVarBytes(byte[] value, int offset, int length) {
+            if (type != ColumnType.BYTES) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(value.length, offset, length);
+            return appendVarValue(value, offset, length, false);
+        }
+
+        public long appendVarString(String value) {
+            return appendVarString((CharSequence)value);
+        }
+
+        public long appendVarString(CharSequence value) {
+            if (type != ColumnType.STRING) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            if (value == null) {
+                return appendNullVarValue();
+            } else {
+                // The zeroed extra byte written by encode is the terminator
+                int length = encode(value, 0, value.length(), 1);
+                return appendVarValue(encodeBuffer, 0, length + 1, false);
+            }
+        }
+
+        public long appendVarString(char[] value, int offset, int length) {
+            if (type != ColumnType.STRING) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(value.length, offset, length);
+            int encodedLength = encode(value, offset, length, 1);
+            return appendVarValue(encodeBuffer, 0, encodedLength + 1, false);
+        }
+
+        public long appendVarStringUtf8(byte[] value, int offset, int length) {
+            if (type != ColumnType.STRING) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(value.length, offset, length);
+            return appendVarValue(value, offset, length, true);
+        }
+
+        // The row is checked and marked not null before its offset is written,
+        // so a rejected value leaves the column unchanged
+        private long appendVarValue(byte[] value, int offset, int length, boolean isTerminated) {
+            long index = pos;
+            handleNotNull(index);
+            long varPos = varData.getPos();
+            data.writeLong(index * 8, varPos);
+            varData.seek(varPos + length + (isTerminated ? 1 : 0));
+            varData.write(varPos, value, offset, length);
+
+            if (isTerminated) {
+                varData.writeByte(varPos + length, (byte)0);
+            }
+
+            pos++;
+            return index;
+        }
+
+        private long appendNullVarValue() {
+            long index = pos;
+            setNull(index);
+            data.writeLong(index * 8, varData.getPos());
+            pos++;
+            return index;
+        }
+
+        public long appendVarStrings(CharSequence[] values, int offset, int length) {
+            checkArray(values.length, offset, length);
+            return appendVarStrings(Arrays.asList(values), offset, length);
+        }
+
+        public long appendVarStrings(List<? extends CharSequence> values, int offset, int length) {
+            if (type != ColumnType.STRING) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.size(), offset, length);
+            checkWriteRange(pos, length);
+            long index = pos;
+            int blockSize = Math.min(length, COPY_BLOCK_SIZE);
+            long[] positions = new long[blockSize];
+            boolean[] nullFlags = new boolean[blockSize];
+
+            for (int i = 0; i < length; i += blockSize) {
+                int count = Math.min(length - i, blockSize);
+                long varPos = varData.getPos();
+                boolean hasNulls = false;
+                int end = 0;
+
+                for (int j = 0; j < count; j++) {
+                    CharSequence value = values.get(offset + i + j);
+                    positions[j] = varPos + end;
+                    nullFlags[j] = value == null;
+                    hasNulls |= value == null;
+
+                    if (value != null) {
+                        end = encode(value, 0, value.length(), end, 1) + 1;
+                    }
+                }
+
+                writeVarBlock(index + i, positions, hasNulls ? nullFlags : null, count, varPos, encodeBuffer, 0, end);
+            }
+
+            pos += length;
+            return index;
+        }
+
+        public long appendVarStringsUtf8(byte[] values, int[] valueOffsets, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.STRING) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkVarOffsets(values, valueOffsets, offset, length);
+            checkWriteRange(pos, length);
+            long index = pos;
+            int blockSize = Math.min(length, COPY_BLOCK_SIZE);
+            long[] positions = new long[blockSize];
+
+            for (int i = 0; i < length; i += blockSize) {
+                int count = Math.min(length - i, blockSize);
+                int first = valueOffsets[offset + i];
+                byte[] buffer = encodeBuffer(valueOffsets[offset + i + count] - first + count);
+                long varPos = varData.getPos();
+                int end = 0;
+
+                for (int j = 0; j < count; j++) {
+                    int start = valueOffsets[offset + i + j];
+                    int valueLength = valueOffsets[offset + i + j + 1] - start;
+                    positions[j] = varPos + end;
+
+                    if (nullFlags == null || !nullFlags[offset + i + j]) {
+                        System.arraycopy(values, start, buffer, end, valueLength);
+                        buffer[end + valueLength] = 0;
+                        end += valueLength + 1;
+                    }
+                }
+
+                writeVarBlock(index + i, positions, nullFlags, offset + i, count, varPos, buffer, 0, end);
+            }
+
+            pos += length;
+            return index;
+        }
+
+        public long appendVarBytes(byte[][] values, int offset, int length) {
+            if (type != ColumnType.BYTES) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(values.length, offset, length);
+            checkWriteRange(pos, length);
+            long index = pos;
+            int blockSize = Math.min(length, COPY_BLOCK_SIZE);
+            long[] positions = new long[blockSize];
+            boolean[] nullFlags = new boolean[blockSize];
+
+            for (int i = 0; i < length; i += blockSize) {
+                int count = Math.min(length - i, blockSize);
+                long varPos = varData.getPos();
+                boolean hasNulls = false;
+                int end = 0;
+
+                for (int j = 0; j < count; j++) {
+                    byte[] value = values[offset + i + j];
+                    positions[j] = varPos + end;
+                    nullFlags[j] = value == null;
+                    hasNulls |= value == null;
+
+                    if (value != null) {
+                        byte[] buffer = encodeBuffer(end + value.length);
+                        System.arraycopy(value, 0, buffer, end, value.length);
+                        end += value.length;
+                    }
+                }
+
+                writeVarBlock(index + i, positions, hasNulls ? nullFlags : null, count, varPos, encodeBuffer(end), 0, end);
+            }
+
+            pos += length;
+            return index;
+        }
+
+        public long appendVarBytes(byte[] values, int[] valueOffsets, boolean[] nullFlags, int offset, int length) {
+            if (type != ColumnType.BYTES) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkVarOffsets(values, valueOffsets, offset, length);
+            checkWriteRange(pos, length);
+            long index = pos;
+            int blockSize = Math.min(length, COPY_BLOCK_SIZE);
+            long[] positions = new long[blockSize];
+            long varStart = varData.getPos();
+            int first = valueOffsets[offset];
+            handleNulls(index, nullFlags, offset, length);
+
+            // Values are already contiguous, so varData takes a single copy
+            // and only the offsets need rebasing
+            for (int i = 0; i < length; i += blockSize) {
+                int count = Math.min(length - i, blockSize);
+
+                for (int j = 0; j < count; j++) {
+                    positions[j] = varStart + valueOffsets[offset + i + j] - first;
+                }
+
+                data.write((index + i) * 8, positions, 0, count);
+            }
+
+            int total = valueOffsets[offset + length] - first;
+            varData.seek(varStart + total);
+            varData.write(varStart, values, first, total);
+            pos += length;
+            return index;
+        }
+
+        private void writeVarBlock(long index, long[] positions, boolean[] nullFlags, int count, long varPos, byte[] buffer, int bufferOffset, int bufferLength) {
+            writeVarBlock(index, positions, nullFlags, 0, count, varPos, buffer, bufferOffset, bufferLength);
+        }
+
+        private void writeVarBlock(long index, long[] positions, boolean[] nullFlags, int nullOffset, int count, long varPos, byte[] buffer, int bufferOffset, int bufferLength) {
+            handleNulls(index, nullFlags, nullOffset, count);
+            data.write(index * 8, positions, 0, count);
+            varData.seek(varPos + bufferLength);
+            varData.write(varPos, buffer, bufferOffset, bufferLength);
+        }
+
+        private static void checkVarOffsets(byte[] values, int[] valueOffsets, int offset, int length) {
+            checkArray(valueOffsets.length, offset, length + 1);
+
+            for (int i = offset; i < offset + length; i++) {
+                if (valueOffsets[i] < 0 || valueOffsets[i] > valueOffsets[i + 1]) {
+                    throw new IndexOutOfBoundsException("Invalid value offsets specified");
+                }
+            }
+
+            if (valueOffsets[offset + length] > values.length) {
+                throw new IndexOutOfBoundsException("Invalid value offsets specified");
+            }
+        }
+
+        public long appendBooleanValue(boolean value) {
+            long index = pos;
+            setBooleanValue(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendByteValue(byte value) {
+            long index = pos;
+            setByteValue(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendDoubleValue(double value) {
+            long index = pos;
+            setDoubleValue(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendFloatValue(float value) {
+            long index = pos;
+            setFloatValue(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendIntValue(int value) {
+            long index = pos;
+            setIntValue(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendLongValue(long value) {
+            long index = pos;
+            setLongValue(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendShortValue(short value) {
+            long index = pos;
+            setShortValue(pos, value);
+            pos++;
+            return index;
+        }
+
+        public long appendBooleans(boolean[] values, int offset, int length) {
+            return appendBooleans(values, null, offset, length);
+        }
+
+        public long appendBooleans(boolean[] values, boolean[] nullFlags, int offset, int length) {
+            long index = pos;
+            setBooleans(pos, values, nullFlags, offset, length);
+            pos += length;
+            return index;
+        }
+
+        public long appendBytes(byte[] values, int offset, int length) {
+            return appendBytes(values, null, offset, length);
+        }
+
+        public long appendBytes(byte[] values, boolean[] nullFlags, int offset, int length) {
+            long index = pos;
+            setBytes(pos, values, nullFlags, offset, length);
+            pos += length;
+            return index;
+        }
+
+        public long appendDoubles(double[] values, int offset, int length) {
+            return appendDoubles(values, null, offset, length);
+        }
+
+        public long appendDoubles(double[] values, boolean[] nullFlags, int offset, int length) {
+            long index = pos;
+            setDoubles(pos, values, nullFlags, offset, length);
+            pos += length;
+            return index;
+        }
+
+        public long appendFloats(float[] values, int offset, int length) {
+            return appendFloats(values, null, offset, length);
+        }
+
+        public long appendFloats(float[] values, boolean[] nullFlags, int offset, int length) {
+            long index = pos;
+            setFloats(pos, values, nullFlags, offset, length);
+            pos += length;
+            return index;
+        }
+
+        public long appendInts(int[] values, int offset, int length) {
+            return appendInts(values, null, offset, length);
+        }
+
+        public long appendInts(int[] values, boolean[] nullFlags, int offset, int length) {
+            long index = pos;
+            setInts(pos, values, nullFlags, offset, length);
+            pos += length;
+            return index;
+        }
+
+        public long appendLongs(long[] values, int offset, int length) {
+            return appendLongs(values, null, offset, length);
+        }
+
+        public long appendLongs(long[] values, boolean[] nullFlags, int offset, int length) {
+            long index = pos;
+            setLongs(pos, values, nullFlags, offset, length);
+            pos += length;
+            return index;
+        }
+
+        public long appendShorts(short[] values, int offset, int length) {
+            return appendShorts(values, null, offset, length);
+        }
+
+        public long appendShorts(short[] values, boolean[] nullFlags, int offset, int length) {
+            long index = pos;
+            setShorts(pos, values, nullFlags, offset, length);
+            pos += length;
+            return index;
+        }
+
+        public long copyFrom(InputColumn source, long sourceIndex, long count) {
+            checkCopyFrom(source, sourceIndex, count);
+            return copyRows(source, sourceIndex, count);
+        }
+
+        private void checkCopyFrom(InputColumn source, long sourceIndex, long count) {
+            if (source.type != type) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            source.checkRange(sourceIndex, count);
+
+            if (!isAutoGrow) {
+                checkCapacity(pos, count);
+            }
+
+            if (!isNullable && source.isNullable && source.countNonNull(sourceIndex, count) != count) {
+                throw new IllegalStateException("Column " + name + " is not nullable");
+            }
+        }
+
+        private long copyRows(InputColumn source, long sourceIndex, long count) {
+            checkWriteRange(pos, count);
+            long index = pos;
+
+            if (isNullable) {
+                if (source.isNullable) {
+                    nulls.copy(source.nulls, sourceIndex, index, count);
+                    nullsDirtyEnd = Math.max(nullsDirtyEnd, index + count);
+                } else {
+                    clearNullFlags(index, count);
+                }
+            }
+
+            if (type == ColumnType.BYTES || type == ColumnType.STRING) {
+                if (count > 0) {
+                    long start = source.data.readLong(sourceIndex * 8);
+                    long end;
+
+                    if (sourceIndex + count < source.size) {
+                        end = source.data.readLong((sourceIndex + count) * 8);
+                    } else {
+                        end = source.varData.getSize();
+                    }
+
+                    long varPos = varData.getPos();
+                    varData.seek(varPos + end - start);
+                    varData.copy(source.varData, start, varPos, end - start);
+                    long[] offsets = new long[(int)Math.min(count, COPY_BLOCK_SIZE)];
+
+                    for (long i = 0; i < count; i += offsets.length) {
+                        int length = (int)Math.min(count - i, offsets.length);
+                        source.data.read((sourceIndex + i) * 8, offsets, 0, length);
+
+                        for (int j = 0; j < length; j++) {
+                            offsets[j] += varPos - start;
+                        }
+
+                        data.write((index + i) * 8, offsets, 0, length);
+                    }
+                }
+            } else {
+                int valueSize = type.getSize();
+                data.copy(source.data, sourceIndex * valueSize, index * valueSize, count * valueSize);
+            }
+
+            pos += count;
+            return index;
+        }
+
+        public long appendGather(InputColumn source, long[] rowIndices, int offset, int length) {
+            checkAppendGather(source, rowIndices, offset, length);
+            return gatherRows(source, rowIndices, offset, length);
+        }
+
+        private void checkAppendGather(InputColumn source, long[] rowIndices, int offset, int length) {
+            if (source.type != type) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            checkArray(rowIndices.length, offset, length);
+
+            if (!isAutoGrow) {
+                checkCapacity(pos, length);
+            }
+
+            for (int i = offset; i < offset + length; i++) {
+                source.checkIndex(rowIndices[i]);
+            }
+
+            if (!isNullable && source.isNullable) {
+                for (int i = offset; i < offset + length; i++) {
+                    if (source.nulls.readByte(rowIndices[i]) != 0) {
+                        throw new IllegalStateException("Column " + name + " is not nullable");
+                    }
+                }
+            }
+        }
+
+        private long gatherRows(InputColumn source, long[] rowIndices, int offset, int length) {
+            checkWriteRange(pos, length);
+            long index = pos;
+
+            if (isNullable) {
+                if (source.isNullable) {
+                    nulls.gather(source.nulls, rowIndices, offset, length, 1, index);
+                    nullsDirtyEnd = Math.max(nullsDirtyEnd, index + length);
+                } else {
+                    clearNullFlags(index, length);
+                }
+            }
+
+            if (type == ColumnType.BYTES || type == ColumnType.STRING) {
+                int blockSize = Math.min(length, COPY_BLOCK_SIZE);
+                long[] positions = new long[blockSize];
+                long[] lengths = new long[blockSize];
+                long[] offsets = new long[blockSize];
+
+                for (int i = 0; i < length; i += blockSize) {
+                    int count = Math.min(length - i, blockSize);
+                    long varPos = varData.getPos();
+                    long varEnd = varPos;
+
+                    for (int j = 0; j < count; j++) {
+                        long row = rowIndices[offset + i + j];
+                        long start = source.data.readLong(row * 8);
+                        long end;
+
+                        if (row < source.size - 1) {
+                            end = source.data.readLong((row + 1) * 8);
+                        } else {
+                            end = source.varData.getSize();
+                        }
+
+                        positions[j] = start;
+                        lengths[j] = end - start;
+                        offsets[j] = varEnd;
+                        varEnd += end - start;
+                    }
+
+                    varData.seek(varEnd);
+                    varData.gather(source.varData, positions, lengths, 0, count, varPos);
+                    data.write((index + i) * 8, offsets, 0, count);
+                }
+            } else {
+                int valueSize = type.getSize();
+                data.gather(source.data, rowIndices, offset, length, valueSize, index * valueSize);
+            }
+
+            pos += length;
+            return index;
+        }
+
+        @Override
+        public long getSize() {
+            return isAutoGrow ? limit : size;
+        }
+
+        @Override
+        protected boolean isGrowing() {
+            return isAutoGrow;
+        }
+
+        // Var data is mapped past the last value as it grows, so the last
+        // value written ends at the write position rather than the mapping
+        @Override
+        protected long varEnd(long index) {
+            return index < pos - 1 ? data.readLong((index + 1) * 8) : varData.getPos();
+        }
+
+        private OutputColumn createPartition() {
+            OutputColumn result = create(name, type, MappedFile.createHeap(), MappedFile.createHeap(), MappedFile.createHeap(), isNullable);
+            result.setAutoGrow(true);
+            return result;
+        }
+
+        private void appendPartition(OutputColumn source) {
+            long index = pos;
+            long length = source.getSize();
+            checkWriteRange(index, length);
+
+            if (length == 0) {
+                return;
+            }
+
+            if (isNullable) {
+                nulls.copy(source.nulls, 0, index, length);
+                nullsDirtyEnd = Math.max(nullsDirtyEnd, index + length);
+            }
+
+            if (type == ColumnType.BYTES || type == ColumnType.STRING) {
+                // Offsets are rebased onto the end of the existing var data
+                // while they are copied; the values themselves are copied once
+                long varPos = varData.getPos();
+                long varLength = source.varData.getPos();
+                varData.seek(varPos + varLength);
+
+                if (varLength > 0) {
+                    varData.copy(source.varData, 0, varPos, varLength);
+                }
+
+                long[] positions = new long[(int)Math.min(length, COPY_BLOCK_SIZE)];
+
+                for (long i = 0; i < length; i += positions.length) {
+                    int blockLength = (int)Math.min(length - i, positions.length);
+                    source.data.read(i * 8, positions, 0, blockLength);
+
+                    for (int j = 0; j < blockLength; j++) {
+                        positions[j] += varPos;
+                    }
+
+                    data.write((index + i) * 8, positions, 0, blockLength);
+                }
+            } else {
+                int valueSize = type.getSize();
+                data.copy(source.data, 0, index * valueSize, length * valueSize);
+            }
+
+            pos = index + length;
+        }
+
+        private void resetPartition() {
+            if (nullsDirtyEnd > 0) {
+                nulls.fill(0, (byte)0, nullsDirtyEnd);
+                nullsDirtyEnd = 0;
+            }
+
+            varData.seek(0);
+            pos = 0;
+            limit = 0;
+            nullCount = -1;
+        }
+
+        private void releasePartition() {
+            data.unmap();
+            nulls.unmap();
+            varData.unmap();
+        }
+
+        private void setAutoGrow(boolean autoGrow) {
+            // Rows within an explicitly set size are kept when auto-grow is
+            // turned on
+            if (autoGrow && !isAutoGrow) {
+                limit = Math.max(limit, Math.max(pos, size));
+            }
+
+            isAutoGrow = autoGrow;
+        }
+
+        private void complete(long size) {
+            if (isAutoGrow && size != this.size) {
+                reserve(size);
+            }
+
+            if (type == ColumnType.BYTES || type == ColumnType.STRING) {
+                varData.truncate();
+            }
+        }
+
+        private void reserve(long size) {
+            data.remap(size * type.getSize());
+
+            if (isNullable()) {
+                nulls.remap(size);
+                nullsDirtyEnd = Math.min(nullsDirtyEnd, size);
+            }
+
+            this.size = size;
+        }
+    }
+
+    private static final class BooleanInputColumn extends InputColumn {
+        private BooleanInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public Boolean getBoolean(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                return data.readByte(index) != 0;
+            }
+        }
+
+        @Override
+        public boolean getBooleanValue(long index) {
+            checkIndex(index);
+            return data.readByte(index) != 0;
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                return Boolean.toString(data.readByte(index) != 0);
+            }
+        }
+    }
+
+    private static final class ByteInputColumn extends InputColumn {
+        private ByteInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public Byte getByte(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                return data.readByte(index);
+            }
+        }
+
+        @Override
+        public byte getByteValue(long index) {
+            checkIndex(index);
+            return data.readByte(index);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                return Byte.toString(data.readByte(index));
+            }
+        }
+    }
+
+    private static final class DoubleInputColumn extends InputColumn {
+        private DoubleInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public Double getDouble(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                return data.readDouble(index * 8);
+            }
+        }
+
+        @Override
+        public double getDoubleValue(long index) {
+            checkIndex(index);
+            return data.readDouble(index * 8);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                return Double.toString(data.readDouble(index * 8));
+            }
+        }
+    }
+
+    private static final class FloatInputColumn extends InputColumn {
+        private FloatInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public Float getFloat(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                return data.readFloat(index * 4);
+            }
+        }
+
+        @Override
+        public float getFloatValue(long index) {
+            checkIndex(index);
+            return data.readFloat(index * 4);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                return Float.toString(data.readFloat(index * 4));
+            }
+        }
+    }
+
+    private static class IntInputColumn extends InputColumn {
+        private IntInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public Integer getInt(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                return data.readInt(index * 4);
+            }
+        }
+
+        @Override
+        public int getIntValue(long index) {
+            checkIndex(index);
+            return data.readInt(index * 4);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                return Integer.toString(data.readInt(index * 4));
+            }
+        }
+    }
+
+    private static final class DateInputColumn extends IntInputColumn {
+        private DateInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                int value = data.readInt(index * 4);
+                return DATE_FORMAT.format(LocalDate.of(1900 + (value >> 21),
+                        (value >> 17) & 0b1111,
+                        (value >> 12) & 0b11111));
+            }
+        }
+    }
+
+    private static final class IPv4InputColumn extends IntInputColumn {
+        private IPv4InputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                int value = data.readInt(index * 4);
+                return (value >>> 24) + "." + ((value >> 16) & 0xFF) + "." + ((value >> 8) & 0xFF) + "." + (value & 0xFF);
+            }
+        }
+    }
+
+    private static final class TimeInputColumn extends IntInputColumn {
+        private TimeInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                int value = data.readInt(index * 4);
+                return TIME_FORMAT.format(LocalTime.of(value >> 26,
+                        (value >> 20) & 0b111111,
+                        (value >> 14) & 0b111111,
+                        ((value >> 4) & 0b1111111111) * 1000000));
+            }
+        }
+    }
+
+    private static class LongInputColumn extends InputColumn {
+        private LongInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public Long getLong(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                return data.readLong(index * 8);
+            }
+        }
+
+        @Override
+        public long getLongValue(long index) {
+            checkIndex(index);
+            return data.readLong(index * 8);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                return Long.toString(data.readLong(index * 8));
+            }
+        }
+    }
+
+    private static final class DateTimeInputColumn extends LongInputColumn {
+        private DateTimeInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                long value = data.readLong(index * 8);
+                return DATETIME_FORMAT.format(LocalDateTime.of(1900 + (int)(value >> 53),
+                        (int)((value >> 49) & 0b1111),
+                        (int)((value >> 44) & 0b11111),
+                        (int)((value >> 39) & 0b11111),
+                        (int)((value >> 33) & 0b111111),
+                        (int)((value >> 27) & 0b111111),
+                        (int)((value >> 17) & 0b1111111111) * 1000000));
+            }
+        }
+    }
+
+    private static final class DecimalInputColumn extends LongInputColumn {
+        private DecimalInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                return Decimal.toString(data.readLong(index * 8));
+            }
+        }
+    }
+
+    private static final class UnsignedLongInputColumn extends LongInputColumn {
+        private UnsignedLongInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                return Unsigned.toString(data.readLong(index * 8));
+            }
+        }
+    }
+
+    private static final class ShortInputColumn extends InputColumn {
+        private ShortInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public Short getShort(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                return data.readShort(index * 2);
+            }
+        }
+
+        @Override
+        public short getShortValue(long index) {
+            checkIndex(index);
+            return data.readShort(index * 2);
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                return Short.toString(data.readShort(index * 2));
+            }
+        }
+    }
+
+    private static final class CharNInputColumn extends InputColumn {
+        private CharNInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public String getChar(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                int valueSize = type.getSize();
+                byte[] buffer = new byte[valueSize];
+                long length = data.readCharN(index * valueSize, buffer, valueSize);
+                return new String(buffer, 0, (int)length, StandardCharsets.UTF_8);
+            }
+        }
+
+        @Override
+        public String toString(long index) {
+            String result = getChar(index);
+            return result == null ? "" : result;
+        }
+    }
+
+    private static final class UUIDInputColumn extends InputColumn {
+        private UUIDInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public UUID getUUID(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                return new UUID(data.readLong(index * 16 + 8), data.readLong(index * 16));
+            }
+        }
+
+        @Override
+        public String toString(long index) {
+            if (isNull(index)) {
+                return "";
+            } else {
+                return getUUID(index).toString();
+            }
+        }
+    }
+
+    private static final class VarBytesInputColumn extends InputColumn {
+        private VarBytesInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public byte[] getVarBytes(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                long position = data.readLong(index * 8);
+                int valueSize = varSize(index, position, 0);
+                byte[] buffer = new byte[valueSize];
+                varData.read(position, buffer, valueSize);
+                return buffer;
+            }
+        }
+    }
+
+    private static final class VarStringInputColumn extends InputColumn {
+        private VarStringInputColumn(String name, ColumnType type, MappedFile file) {
+            super(name, type, file);
+        }
+
+        @Override
+        public String getVarString(long index) {
+            if (isNull(index)) {
+                return null;
+            } else {
+                long position = data.readLong(index * 8);
+                int valueSize = varSize(index, position, 1);
+                byte[] buffer = new byte[valueSize];
+                varData.read(position, buffer, valueSize);
+                return new String(buffer, StandardCharsets.UTF_8);
+            }
+        }
+
+        @Override
+        public String toString(long index) {
+            String result = getVarString(index);
+            return result == null ? "" : result;
+        }
+    }
+
+    private static final class BooleanOutputColumn extends OutputColumn {
+        private BooleanOutputColumn(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable) {
+            super(name, type, data, nulls, varData, nullable);
+        }
+
+        @Override
+        public void setBoolean(long index, Boolean value) {
+            if (value == null) {
+                setNull(index);
+            } else {
+                handleNotNull(index);
+                data.writeByte(index, value ? (byte)1 : (byte)0);
+            }
+        }
+
+        @Override
+        public void setBooleanValue(long index, boolean value) {
+            handleNotNull(index);
+            data.writeByte(index, value ? (byte)1 : (byte)0);
+        }
+    }
+
+    private static final class ByteOutputColumn extends OutputColumn {
+        private ByteOutputColumn(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable) {
+            super(name, type, data, nulls, varData, nullable);
+        }
+
+        @Override
+        public void setByte(long index, Byte value) {
+            if (value == null) {
+                setNull(index);
+            } else {
+                handleNotNull(index);
+                data.writeByte(index, value);
+            }
+        }
+
+        @Override
+        public void setByteValue(long index, byte value) {
+            handleNotNull(index);
+            data.writeByte(index, value);
+        }
+    }
+
+    private static final class DoubleOutputColumn extends OutputColumn {
+        private DoubleOutputColumn(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable) {
+            super(name, type, data, nulls, varData, nullable);
+        }
+
+        @Override
+        public void setDouble(long index, Double value) {
+            if (value == null) {
+                setNull(index);
+            } else {
+                handleNotNull(index);
+                data.writeDouble(index * 8, value);
+            }
+        }
+
+        @Override
+        public void setDoubleValue(long index, double value) {
+            handleNotNull(index);
+            data.writeDouble(index * 8, value);
+        }
+    }
+
+    private static final class FloatOutputColumn extends OutputColumn {
+        private FloatOutputColumn(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable) {
+            super(name, type, data, nulls, varData, nullable);
+        }
+
+        @Override
+        public void setFloat(long index, Float value) {
+            if (value == null) {
+                setNull(index);
+            } else {
+                handleNotNull(index);
+                data.writeFloat(index * 4, value);
+            }
+        }
+
+        @Override
+        public void setFloatValue(long index, float value) {
+            handleNotNull(index);
+            data.writeFloat(index * 4, value);
+        }
+    }
+
+    private static final class IntOutputColumn extends OutputColumn {
+        private IntOutputColumn(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable) {
+            super(name, type, data, nulls, varData, nullable);
+        }
+
+        @Override
+        public void setInt(long index, Integer value) {
+            if (value == null) {
+                setNull(index);
+            } else {
+                handleNotNull(index);
+                data.writeInt(index * 4, value);
+            }
+        }
+
+        @Override
+        public void setIntValue(long index, int value) {
+            handleNotNull(index);
+            data.writeInt(index * 4, value);
+        }
+    }
+
+    private static final class LongOutputColumn extends OutputColumn {
+        private LongOutputColumn(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable) {
+            super(name, type, data, nulls, varData, nullable);
+        }
+
+        @Override
+        public void setLong(long index, Long value) {
+            if (value == null) {
+                setNull(index);
+            } else {
+                handleNotNull(index);
+                data.writeLong(index * 8, value);
+            }
+        }
+
+        @Override
+        public void setLongValue(long index, long value) {
+            handleNotNull(index);
+            data.writeLong(index * 8, value);
+        }
+    }
+
+    private static final class ShortOutputColumn extends OutputColumn {
+        private ShortOutputColumn(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable) {
+            super(name, type, data, nulls, varData, nullable);
+        }
+
+        @Override
+        public void setShort(long index, Short value) {
+            if (value == null) {
+                setNull(index);
+            } else {
+                handleNotNull(index);
+                data.writeShort(index * 2, value);
+            }
+        }
+
+        @Override
+        public void setShortValue(long index, short value) {
+            handleNotNull(index);
+            data.writeShort(index * 2, value);
+        }
+    }
+
+    private static final class UUIDOutputColumn extends OutputColumn {
+        private UUIDOutputColumn(String name, ColumnType type, MappedFile data, MappedFile nulls, MappedFile varData, boolean nullable) {
+            super(name, type, data, nulls, varData, nullable);
+        }
+
+        @Override
+        public void setUUID(long index, UUID value) {
+            if (!handleNull(index, value)) {
+                data.writeLong(index * 16, value.getLeastSignificantBits());
+                data.writeLong(index * 16 + 8, value.getMostSignificantBits());
+            }
+        }
+    }
+
+    private static abstract class ColumnSpliterator {
+        protected final Column column;
+        protected final Scratch scratch = new Scratch();
+        protected long index;
+        protected final long end;
+        protected byte[] nullFlags;
+        protected int blockPos;
+        protected int blockLength;
+
+        private ColumnSpliterator(Column column, long index, long end) {
+            this.column = column;
+            this.index = index;
+            this.end = end;
+        }
+
+        protected abstract void read(long index, int length);
+
+        // Rows are read a block at a time along with their null flags, which
+        // the traversal methods use to skip nulls
+        protected final boolean fill() {
+            if (blockPos < blockLength) {
+                return true;
+            }
+
+            if (index >= end) {
+                return false;
+            }
+
+            int length = (int)Math.min(end - index, Scratch.BLOCK_SIZE);
+            read(index, length);
+
+            if (column.isNullable) {
+                if (nullFlags == null) {
+                    nullFlags = new byte[Scratch.BLOCK_SIZE];
+                }
+
+                column.nulls.read(index, nullFlags, 0, length);
+            }
+
+            index += length;
+            blockPos = 0;
+            blockLength = length;
+            return true;
+        }
+
+        protected final boolean isNotNull(int position) {
+            return nullFlags == null || nullFlags[position] == 0;
+        }
+
+        // Only unstarted blocks are split off, so a partially consumed block
+        // stays with the spliterator that read it
+        protected final long split() {
+            if (blockPos < blockLength || end - index <= Scratch.BLOCK_SIZE) {
+                return -1;
+            }
+
+            long start = index;
+            index = start + (end - start) / 2;
+            return start;
+        }
+
+        public long estimateSize() {
+            return end - index + blockLength - blockPos;
+        }
+
+        public int characteristics() {
+            int result = Spliterator.ORDERED | Spliterator.NONNULL;
+
+            if (!column.isWritable) {
+                result |= Spliterator.IMMUTABLE;
+            }
+
+            if (!column.isNullable) {
+                result |= Spliterator.SIZED | Spliterator.SUBSIZED;
+            }
+
+            return result;
+        }
+    }
+
+    private static final class IntColumnSpliterator extends ColumnSpliterator implements Spliterator.OfInt {
+        private final int[] values = new int[Scratch.BLOCK_SIZE];
+
+        private IntColumnSpliterator(Column column, long index, long end) {
+            super(column, index, end);
+        }
+
+        @Override
+        protected void read(long index, int length) {
+            column.readAsInts(index, length, values, scratch);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while (fill()) {
+                int position = blockPos++;
+
+                if (isNotNull(position)) {
+                    action.accept(values[position]);
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            while (fill()) {
+                int length = blockLength;
+
+                for (int i = blockPos; i < length; i++) {
+                    if (isNotNull(i)) {
+                        action.accept(values[i]);
+                    }
+                }
+
+                blockPos = length;
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            long start = split();
+            return start < 0 ? null : new IntColumnSpliterator(column, start, index);
+        }
+    }
+
+    private static final class LongColumnSpliterator extends ColumnSpliterator implements Spliterator.OfLong {
+        private final long[] values = new long[Scratch.BLOCK_SIZE];
+
+        private LongColumnSpliterator(Column column, long index, long end) {
+            super(column, index, end);
+        }
+
+        @Override
+        protected void read(long index, int length) {
+            column.readAsLongs(index, length, values, scratch);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while (fill()) {
+                int position = blockPos++;
+
+                if (isNotNull(position)) {
+                    action.accept(values[position]);
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            while (fill()) {
+                int length = blockLength;
+
+                for (int i = blockPos; i < length; i++) {
+                    if (isNotNull(i)) {
+                        action.accept(values[i]);
+                    }
+                }
+
+                blockPos = length;
+            }
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            long start = split();
+            return start < 0 ? null : new LongColumnSpliterator(column, start, index);
+        }
+    }
+
+    private static final class DoubleColumnSpliterator extends ColumnSpliterator implements Spliterator.OfDouble {
+        private final double[] values = new double[Scratch.BLOCK_SIZE];
+
+        private DoubleColumnSpliterator(Column column, long index, long end) {
+            super(column, index, end);
+        }
+
+        @Override
+        protected void read(long index, int length) {
+            column.readAsDoubles(index, length, values, scratch);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            while (fill()) {
+                int position = blockPos++;
+
+                if (isNotNull(position)) {
+                    action.accept(values[position]);
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            while (fill()) {
+                int length = blockLength;
+
+                for (int i = blockPos; i < length; i++) {
+                    if (isNotNull(i)) {
+                        action.accept(values[i]);
+                    }
+                }
+
+                blockPos = length;
+            }
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            long start = split();
+            return start < 0 ? null : new DoubleColumnSpliterator(column, start, index);
+        }
+    }
+
+    private static final class VarColumnSpliterator extends ColumnSpliterator implements Spliterator<VarSlice> {
+        private VarColumnSpliterator(Column column, long index, long end) {
+            super(column, index, end);
+        }
+
+        @Override
+        protected void read(long index, int length) {
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super VarSlice> action) {
+            while (fill()) {
+                int position = blockPos++;
+
+                if (isNotNull(position)) {
+                    action.accept(column.getVarSlice(index - blockLength + position, null));
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public Spliterator<VarSlice> trySplit() {
+            long start = split();
+            return start < 0 ? null : new VarColumnSpliterator(column, start, index);
+        }
+    }
+
+    private static final class Scratch {
+        private static final int BLOCK_SIZE = 1024;
+
+        private long[] longs;
+        private double[] doubles;
+        private float[] floats;
+        private int[] ints;
+        private short[] shorts;
+        private byte[] bytes;
+        private final List<boolean[]> masks = new ArrayList<>();
+
+        private long[] longs() {
+            if (longs == null) {
+                longs = new long[BLOCK_SIZE];
+            }
+
+            return longs;
+        }
+
+        private double[] doubles() {
+            if (doubles == null) {
+                doubles = new double[BLOCK_SIZE];
+            }
+
+            return doubles;
+        }
+
+        private float[] floats() {
+            if (floats == null) {
+                floats = new float[BLOCK_SIZE];
+            }
+
+            return floats;
+        }
+
+        private int[] ints() {
+            if (ints == null) {
+                ints = new int[BLOCK_SIZE];
+            }
+
+            return ints;
+        }
+
+        private short[] shorts() {
+            if (shorts == null) {
+                shorts = new short[BLOCK_SIZE];
+            }
+
+            return shorts;
+        }
+
+        private byte[] bytes() {
+            if (bytes == null) {
+                bytes = new byte[BLOCK_SIZE];
+            }
+
+            return bytes;
+        }
+
+        private boolean[] mask(int depth) {
+            while (masks.size() <= depth) {
+                masks.add(new boolean[BLOCK_SIZE]);
+            }
+
+            return masks.get(depth);
+        }
+    }
+
+    public static final class Decimal {
+        public static final int SCALE = 4;
+        public static final long ONE = 10000;
+
+        private static final long[] POWERS = { 1, 10, 100, 1000, 10000 };
+        private static final long MAX_DOUBLE = 922337203685477L;
+
+        private Decimal() {
+        }
+
+        public static long valueOf(long value) {
+            return Math.multiplyExact(value, ONE);
+        }
+
+        public static long valueOf(double value) {
+            if (Double.isNaN(value) || Math.abs(value) >= MAX_DOUBLE) {
+                throw new ArithmeticException("Decimal overflow");
+            }
+
+            return Math.round(value * ONE);
+        }
+
+        public static double toDouble(long value) {
+            return value / (double)ONE;
+        }
+
+        public static long add(long a, long b) {
+            return Math.addExact(a, b);
+        }
+
+        public static long subtract(long a, long b) {
+            return Math.subtractExact(a, b);
+        }
+
+        public static long multiply(long a, long b) {
+            // a * b / ONE, split so that no partial product exceeds a long
+            long aHigh = a / ONE;
+            long aLow = a % ONE;
+            long bHigh = b / ONE;
+            long bLow = b % ONE;
+            long result = Math.multiplyExact(aHigh, b);
+            result = Math.addExact(result, aLow * bHigh);
+            return Math.addExact(result, divideHalfUp(aLow * bLow, ONE));
+        }
+
+        public static long round(long value, int places) {
+            if (places < 0 || places > SCALE) {
+                throw new IllegalArgumentException("Invalid decimal places specified");
+            }
+
+            long unit = POWERS[SCALE - places];
+            return Math.multiplyExact(divideHalfUp(value, unit), unit);
+        }
+
+        public static String toString(long value) {
+            return appendTo(new StringBuilder(21), value).toString();
+        }
+
+        public static StringBuilder appendTo(StringBuilder builder, long value) {
+            long integer = value / ONE;
+            int fraction = (int)(value % ONE);
+
+            if (value < 0) {
+                builder.append('-');
+                integer = -integer;
+                fraction = -fraction;
+            }
+
+            builder.append(integer).append('.');
+
+            for (long unit = ONE / 10; unit > 0; unit /= 10) {
+                builder.append((char)('0' + fraction / unit % 10));
+            }
+
+            return builder;
+        }
+
+        public static long parse(CharSequence value) {
+            int length = value.length();
+            int i = 0;
+            boolean negative = false;
+
+            if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+                negative = value.charAt(0) == '-';
+                i++;
+            }
+
+            long result = 0;
+            int digits = 0;
+            int places = -1;
+
+            for (; i < length; i++) {
+                char c = value.charAt(i);
+
+                if (c == '.' && places < 0) {
+                    places = 0;
+                    continue;
+                }
+
+                if (c < '0' || c > '9') {
+                    throw new NumberFormatException("Invalid decimal value: " + value);
+                }
+
+                if (places >= 0 && ++places > SCALE) {
+                    if (c != '0') {
+                        throw new ArithmeticException("Rounding necessary");
+                    }
+
+                    continue;
+                }
+
+                result = Math.subtractExact(Math.multiplyExact(result, 10), c - '0');
+                digits++;
+            }
+
+            if (digits == 0) {
+                throw new NumberFormatException("Invalid decimal value: " + value);
+            }
+
+            result = Math.multiplyExact(result, POWERS[SCALE - Math.max(Math.min(places, SCALE), 0)]);
+            return negative ? result : Math.negateExact(result);
+        }
+
+        private static long divideHalfUp(long value, long divisor) {
+            long quotient = value / divisor;
+            long remainder = value % divisor;
+
+            if (Math.abs(remainder) * 2 >= divisor) {
+                quotient += value < 0 ? -1 : 1;
+            }
+
+            return quotient;
+        }
+    }
+
+    public static final class VarSlice implements Comparable<VarSlice> {
+        private static final int WINDOW_SIZE = 1 << 20;
+        private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+        private MappedFile file;
+        private MappedFile mutableFile;
+        private long remapCount;
+        private ByteBuffer window;
+        private long windowStart;
+        private long windowEnd;
+        private int offset;
+        private int length;
+
+        public VarSlice() {
+        }
+
+        void reset(MappedFile file, long position, int length, boolean reuseWindow) {
+            // Only immutable files can keep a window across rows, since
+            // writes may remap the underlying memory
+            if (!reuseWindow || file != this.file || position < windowStart || position + length > windowEnd) {
+                long windowSize = Math.max(length, Math.min(WINDOW_SIZE, file.getSize() - position));
+                this.file = reuseWindow ? file : null;
+                window = file.getBuffer(position, windowSize);
+                windowStart = position;
+                windowEnd = position + windowSize;
+            }
+
+            // Growing a writable file may move its mapping, which leaves the
+            // window pointing at unmapped memory
+            mutableFile = reuseWindow ? null : file;
+            remapCount = reuseWindow ? 0 : file.getRemapCount();
+            this.offset = (int)(position - windowStart);
+            this.length = length;
+        }
+
+        public int size() {
+            return length;
+        }
+
+        public boolean isEmpty() {
+            return length == 0;
+        }
+
+        public byte byteAt(int index) {
+            checkValid();
+
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Invalid index specified");
+            }
+
+            return window.get(offset + index);
+        }
+
+        public void getBytes(int index, byte[] dest, int destOffset, int count) {
+            checkValid();
+
+            if (index < 0 || count < 0 || index > length - count) {
+                throw new IndexOutOfBoundsException("Invalid index specified");
+            }
+
+            ByteBuffer view = window.duplicate();
+            view.position(offset + index);
+            view.get(dest, destOffset, count);
+        }
+
+        public byte[] toByteArray() {
+            byte[] result = new byte[length];
+            getBytes(0, result, 0, length);
+            return result;
+        }
+
+        public ByteBuffer asByteBuffer() {
+            checkValid();
+
+            ByteBuffer result = window.asReadOnlyBuffer();
+            result.position(offset).limit(offset + length);
+            return result.slice();
+        }
+
+        public boolean startsWith(VarSlice prefix) {
+            return prefix.length <= length && regionEquals(0, prefix, 0, prefix.length);
+        }
+
+        public boolean startsWith(byte[] prefix) {
+            checkValid();
+
+            if (prefix.length > length) {
+                return false;
+            }
+
+            for (int i = 0; i < prefix.length; i++) {
+                if (window.get(offset + i) != prefix[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        public boolean endsWith(byte[] suffix) {
+            checkValid();
+
+            if (suffix.length > length) {
+                return false;
+            }
+
+            int start = offset + length - suffix.length;
+
+            for (int i = 0; i < suffix.length; i++) {
+                if (window.get(start + i) != suffix[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        public int indexOf(byte value) {
+            return indexOf(value, 0);
+        }
+
+        public int indexOf(byte value, int fromIndex) {
+            checkValid();
+
+            for (int i = Math.max(fromIndex, 0); i < length; i++) {
+                if (window.get(offset + i) == value) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        public int indexOf(byte[] value) {
+            return indexOf(value, 0);
+        }
+
+        public int indexOf(byte[] value, int fromIndex) {
+            checkValid();
+
+            if (value.length == 0) {
+                return Math.min(Math.max(fromIndex, 0), length);
+            }
+
+            int last = length - value.length;
+            byte first = value[0];
+
+            for (int i = Math.max(fromIndex, 0); i <= last; i++) {
+                if (window.get(offset + i) != first) {
+                    continue;
+                }
+
+                int j = 1;
+
+                while (j < value.length && window.get(offset + i + j) == value[j]) {
+                    j++;
+                }
+
+                if (j == value.length) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        public boolean contentEquals(byte[] value) {
+            return value.length == length && startsWith(value);
+        }
+
+        public boolean contentEquals(CharSequence value) {
+            // Compares against the UTF-8 encoding of value without materializing it
+            checkValid();
+            int position = 0;
+
+            for (int i = 0; i < value.length(); i++) {
+                int c = value.charAt(i);
+
+                if (c < 0x80) {
+                    if (position >= length || window.get(offset + position++) != c) {
+                        return false;
+                    }
+
+                    continue;
+                }
+
+                int codePoint = c;
+                int count;
+
+                if (c < 0x800) {
+                    count = 2;
+                } else if (Character.isHighSurrogate((char)c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint((char)c, value.charAt(++i));
+                    count = 4;
+                } else if (Character.isSurrogate((char)c)) {
+                    codePoint = '?';
+                    count = 1;
+                } else {
+                    count = 3;
+                }
+
+                if (position + count > length) {
+                    return false;
+                }
+
+                int lead = count == 1 ? codePoint : ((0xF00 >> count) & 0xFF) | (codePoint >> (6 * (count - 1)));
+
+                if (window.get(offset + position++) != (byte)lead) {
+                    return false;
+                }
+
+                for (int shift = 6 * (count - 2); shift >= 0; shift -= 6) {
+                    if (window.get(offset + position++) != (byte)(0x80 | ((codePoint >> shift) & 0x3F))) {
+                        return false;
+                    }
+                }
+            }
+
+            return position == length;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (!(other instanceof VarSlice)) {
+                return false;
+            }
+
+            VarSlice slice = (VarSlice)other;
+            return slice.length == length && regionEquals(0, slice, 0, length);
+        }
+
+        @Override
+        public int hashCode() {
+            checkValid();
+
+            int result = 1;
+
+            for (int i = offset; i < offset + length; i++) {
+                result = 31 * result + window.get(i);
+            }
+
+            return result;
+        }
+
+        @Override
+        public int compareTo(VarSlice other) {
+            checkValid();
+            other.checkValid();
+            int count = Math.min(length, other.length);
+            int i = 0;
+
+            for (; i + 8 <= count; i += 8) {
+                long a = window.getLong(offset + i);
+                long b = other.window.getLong(other.offset + i);
+
+                if (a != b) {
+                    return LITTLE_ENDIAN
+                            ? Long.compareUnsigned(Long.reverseBytes(a), Long.reverseBytes(b))
+                            : Long.compareUnsigned(a, b);
+                }
+            }
+
+            for (; i < count; i++) {
+                int a = window.get(offset + i) & 0xFF;
+                int b = other.window.get(other.offset + i) & 0xFF;
+
+                if (a != b) {
+                    return a - b;
+                }
+            }
+
+            return length - other.length;
+        }
+
+        @Override
+        public String toString() {
+            checkValid();
+
+            if (window.hasArray()) {
+                return new String(window.array(), window.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+            }
+
+            return new String(toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        private boolean regionEquals(int index, VarSlice other, int otherIndex, int count) {
+            checkValid();
+            other.checkValid();
+            int i = 0;
+
+            for (; i + 8 <= count; i += 8) {
+                if (window.getLong(offset + index + i) != other.window.getLong(other.offset + otherIndex + i)) {
+                    return false;
+                }
+            }
+
+            for (; i < count; i++) {
+                if (window.get(offset + index + i) != other.window.get(other.offset + otherIndex + i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private void checkValid() {
+            if (mutableFile != null && mutableFile.getRemapCount() != remapCount) {
+                throw new IllegalStateException("Slice is no longer valid, its column has been remapped");
+            }
+        }
+    }
+
+    public static final class PackedChar {
+        private static final boolean BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+        private PackedChar() {
+        }
+
+        public static long pack(String value) {
+            return pack(value, 0);
+        }
+
+        public static long pack(String value, int word) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            if (word < 0 || word > 1) {
+                throw new IndexOutOfBoundsException("Invalid word specified");
+            }
+
+            if (bytes.length > 16) {
+                throw new IllegalArgumentException("Value too long");
+            }
+
+            long result = 0;
+
+            for (int i = 0; i < 8; i++) {
+                int j = word * 8 + i;
+                result |= (j < bytes.length ? bytes[j] & 0xFFL : 0) << (56 - i * 8);
+            }
+
+            return result;
+        }
+
+        public static int length(long value) {
+            return 8 - Long.numberOfTrailingZeros(value) / 8;
+        }
+
+        public static int length(long high, long low) {
+            return low == 0 ? length(high) : 8 + length(low);
+        }
+
+        public static int compare(long a, long b) {
+            return Long.compareUnsigned(a, b);
+        }
+
+        public static int compare(long aHigh, long aLow, long bHigh, long bLow) {
+            int result = Long.compareUnsigned(aHigh, bHigh);
+            return result != 0 ? result : Long.compareUnsigned(aLow, bLow);
+        }
+
+        public static int hash(long value) {
+            value ^= value >>> 33;
+            value *= 0xFF51AFD7ED558CCDL;
+            value ^= value >>> 33;
+            value *= 0xC4CEB9FE1A85EC53L;
+            value ^= value >>> 33;
+            return (int)value;
+        }
+
+        public static int hash(long high, long low) {
+            return hash(high * 31 + hash(low));
+        }
+
+        public static boolean startsWith(long value, long prefix, int prefixLength) {
+            if (prefixLength <= 0) {
+                return true;
+            }
+
+            long mask = prefixLength >= 8 ? -1L : ~(-1L >>> (prefixLength * 8));
+            return (value & mask) == prefix;
+        }
+
+        public static boolean startsWith(long high, long low, long prefixHigh, long prefixLow, int prefixLength) {
+            if (prefixLength <= 8) {
+                return startsWith(high, prefixHigh, prefixLength);
+            }
+
+            return high == prefixHigh && startsWith(low, prefixLow, prefixLength - 8);
+        }
+
+        public static String toString(long value) {
+            return toString(value, 0);
+        }
+
+        public static String toString(long high, long low) {
+            byte[] bytes = new byte[16];
+            int length = length(high, low);
+
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte)((i < 8 ? high : low) >>> (56 - (i & 7) * 8));
+            }
+
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        static long fromStorage(byte value) {
+            return (value & 0xFFL) << 56;
+        }
+
+        static long fromStorage(short value) {
+            return ((BIG_ENDIAN ? Short.reverseBytes(value) : value) & 0xFFFFL) << 48;
+        }
+
+        static long fromStorage(int value) {
+            return ((BIG_ENDIAN ? Integer.reverseBytes(value) : value) & 0xFFFFFFFFL) << 32;
+        }
+
+        static long fromStorage(long value) {
+            return BIG_ENDIAN ? Long.reverseBytes(value) : value;
+        }
+    }
+
+    public static final class Unsigned {
+        private Unsigned() {
+        }
+
+        public static int compare(long a, long b) {
+            return Long.compareUnsigned(a, b);
+        }
+
+        public static long divide(long dividend, long divisor) {
+            return Long.divideUnsigned(dividend, divisor);
+        }
+
+        public static long remainder(long dividend, long divisor) {
+            return Long.remainderUnsigned(dividend, divisor);
+        }
+
+        public static long min(long a, long b) {
+            return Long.compareUnsigned(a, b) <= 0 ? a : b;
+        }
+
+        public static long max(long a, long b) {
+            return Long.compareUnsigned(a, b) >= 0 ? a : b;
+        }
+
+        public static double toDouble(long value) {
+            if (value < 0) {
+                // Halve with a sticky low bit so the conversion rounds only once
+                return (double)((value >>> 1) | (value & 1)) * 2.0;
+            } else {
+                return value;
+            }
+        }
+
+        public static BigInteger toBigInteger(long value) {
+            if (value < 0) {
+                return BigInteger.valueOf(value & Long.MAX_VALUE).setBit(63);
+            } else {
+                return BigInteger.valueOf(value);
+            }
+        }
+
+        public static String toString(long value) {
+            return Long.toUnsignedString(value);
+        }
+
+        public static long parse(CharSequence value) {
+            return Long.parseUnsignedLong(value.toString());
+        }
+
+        public static void sort(long[] values) {
+            sort(values, 0, values.length);
+        }
+
+        public static void sort(long[] values, int fromIndex, int toIndex) {
+            // Flipping the sign bit maps unsigned order onto signed order
+            for (int i = fromIndex; i < toIndex; i++) {
+                values[i] ^= Long.MIN_VALUE;
+            }
+
+            Arrays.sort(values, fromIndex, toIndex);
+
+            for (int i = fromIndex; i < toIndex; i++) {
+                values[i] ^= Long.MIN_VALUE;
+            }
+        }
+    }
+
+    public static abstract class Filter {
+        private static enum Comparison {
+            EQUAL,
+            NOT_EQUAL,
+            LESS,
+            LESS_OR_EQUAL,
+            GREATER,
+            GREATER_OR_EQUAL
+        }
+
+        public static Filter equalTo(Column column, long value) {
+            return compare(column, Comparison.EQUAL, value);
+        }
+
+        public static Filter equalTo(Column column, double value) {
+            return new DoubleComparison(column, Comparison.EQUAL, value, false);
+        }
+
+        public static Filter notEqualTo(Column column, long value) {
+            return compare(column, Comparison.NOT_EQUAL, value);
+        }
+
+        public static Filter notEqualTo(Column column, double value) {
+            return new DoubleComparison(column, Comparison.NOT_EQUAL, value, false);
+        }
+
+        public static Filter lessThan(Column column, long value) {
+            return compare(column, Comparison.LESS, value);
+        }
+
+        public static Filter lessThan(Column column, double value) {
+            return new DoubleComparison(column, Comparison.LESS, value, false);
+        }
+
+        public static Filter lessThanOrEqualTo(Column column, long value) {
+            return compare(column, Comparison.LESS_OR_EQUAL, value);
+        }
+
+        public static Filter lessThanOrEqualTo(Column column, double value) {
+            return new DoubleComparison(column, Comparison.LESS_OR_EQUAL, value, false);
+        }
+
+        public static Filter greaterThan(Column column, long value) {
+            return compare(column, Comparison.GREATER, value);
+        }
+
+        public static Filter greaterThan(Column column, double value) {
+            return new DoubleComparison(column, Comparison.GREATER, value, false);
+        }
+
+        public static Filter greaterThanOrEqualTo(Column column, long value) {
+            return compare(column, Comparison.GREATER_OR_EQUAL, value);
+        }
+
+        public static Filter greaterThanOrEqualTo(Column column, double value) {
+            return new DoubleComparison(column, Comparison.GREATER_OR_EQUAL, value, false);
+        }
+
+        public static Filter between(Column column, long min, long max) {
+            return and(greaterThanOrEqualTo(column, min), lessThanOrEqualTo(column, max));
+        }
+
+        public static Filter between(Column column, double min, double max) {
+            return and(greaterThanOrEqualTo(column, min), lessThanOrEqualTo(column, max));
+        }
+
+        public static Filter in(Column column, long... values) {
+            switch (column.getType()) {
+                case DOUBLE:
+                case FLOAT: {
+                    if (values.length == 0) {
+                        // Nothing equals NaN, so this matches no rows
+                        return new DoubleComparison(column, Comparison.EQUAL, Double.NaN, false);
+                    }
+
+                    Filter[] filters = new Filter[values.length];
+
+                    for (int i = 0; i < values.length; i++) {
+                        filters[i] = new DoubleComparison(column, Comparison.EQUAL, values[i], false);
+                    }
+
+                    return new Combination(filters, false);
+                }
+
+                default:
+                    return new LongIn(column, values, false);
+            }
+        }
+
+        // Integer constants are compared as doubles against floating point
+        // columns, so that greaterThan(doubleColumn, 100) works as expected
+        private static Filter compare(Column column, Comparison comparison, long value) {
+            switch (column.getType()) {
+                case DOUBLE:
+                case FLOAT:
+                    return new DoubleComparison(column, comparison, value, false);
+
+                default:
+                    return new LongComparison(column, comparison, value, false);
+            }
+        }
+
+        public static Filter isNull(Column column) {
+            return new NullCheck(column, true);
+        }
+
+        public static Filter isNotNull(Column column) {
+            return new NullCheck(column, false);
+        }
+
+        public static Filter and(Filter... filters) {
+            return new Combination(filters, true);
+        }
+
+        public static Filter or(Filter... filters) {
+            return new Combination(filters, false);
+        }
+
+        public static Filter not(Filter filter) {
+            return filter.negate();
+        }
+
+        private Filter() {
+        }
+
+        public int select(long index, int length, long[] selection, int offset) {
+            Column.checkArray(selection.length, offset, length);
+            Scratch scratch = new Scratch();
+            boolean[] mask = scratch.mask(0);
+            int count = 0;
+
+            for (int i = 0; i < length; i += Scratch.BLOCK_SIZE) {
+                int blockLength = Math.min(length - i, Scratch.BLOCK_SIZE);
+                evaluate(index + i, blockLength, mask, scratch, 1);
+
+                for (int j = 0; j < blockLength; j++) {
+                    selection[offset + count] = index + i + j;
+                    count += mask[j] ? 1 : 0;
+                }
+            }
+
+            return count;
+        }
+
+        public long evaluate(long index, long length, long[] bitmap) {
+            if (length < 0 || (length + 63) / 64 > bitmap.length) {
+                throw new IndexOutOfBoundsException("Invalid bitmap length specified");
+            }
+
+            Scratch scratch = new Scratch();
+            boolean[] mask = scratch.mask(0);
+            long count = 0;
+
+            for (long i = 0; i < length; i += Scratch.BLOCK_SIZE) {
+                int blockLength = (int)Math.min(length - i, Scratch.BLOCK_SIZE);
+                evaluate(index + i, blockLength, mask, scratch, 1);
+
+                for (int j = 0; j < blockLength; j += 64) {
+                    long word = 0;
+
+                    for (int k = 0; k < 64 && j + k < blockLength; k++) {
+                        word |= (mask[j + k] ? 1L : 0L) << k;
+                    }
+
+                    bitmap[(int)((i + j) >>> 6)] = word;
+                    count += Long.bitCount(word);
+                }
+            }
+
+            return count;
+        }
+
+        abstract void evaluate(long index, int length, boolean[] mask, Scratch scratch, int depth);
+
+        // Negation is pushed down to the column filters so that null rows,
+        // whose comparisons are unknown, stay unselected under not()
+        abstract Filter negate();
+
+        private static void checkType(Column column, boolean isLong) {
+            if (column.getType() != ColumnType.IPV4) {
+                column.checkNumeric(isLong);
+            } else if (!isLong) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+        }
+
+        // IPV4 addresses are stored as signed ints; they are compared as
+        // unsigned 32-bit values so that 128.0.0.0 and up order after 127.x
+        private static void readValues(Column column, long index, int length, long[] values, Scratch scratch) {
+            column.readAsLongs(index, length, values, scratch);
+
+            if (column.getType() == ColumnType.IPV4) {
+                for (int i = 0; i < length; i++) {
+                    values[i] &= 0xFFFFFFFFL;
+                }
+            }
+        }
+
+        private static void applyNulls(Column column, long index, int length, boolean[] mask, boolean isNegated, Scratch scratch) {
+            if (isNegated) {
+                for (int i = 0; i < length; i++) {
+                    mask[i] = !mask[i];
+                }
+            }
+
+            if (column.isNullable()) {
+                byte[] nullFlags = scratch.bytes();
+                column.nulls.read(index, nullFlags, 0, length);
+
+                for (int i = 0; i < length; i++) {
+                    mask[i] &= nullFlags[i] == 0;
+                }
+            }
+        }
+    }
+
+    private static final class LongComparison extends Filter {
+        private final Column column;
+        private final Filter.Comparison comparison;
+        private final long bias;
+        private final long value;
+        private final boolean isNegated;
+
+        private LongComparison(Column column, Filter.Comparison comparison, long value, boolean isNegated) {
+            Filter.checkType(column, true);
+            this.column = column;
+            this.comparison = comparison;
+            this.bias = column.getType() == ColumnType.ULONG ? Long.MIN_VALUE : 0;
+            this.value = value ^ bias;
+            this.isNegated = isNegated;
+        }
+
+        @Override
+        Filter negate() {
+            return new LongComparison(column, comparison, value ^ bias, !isNegated);
+        }
+
+        @Override
+        void evaluate(long index, int length, boolean[] mask, Scratch scratch, int depth) {
+            column.checkRange(index, length);
+            long[] values = scratch.longs();
+            Filter.readValues(column, index, length, values, scratch);
+
+            if (bias != 0) {
+                for (int i = 0; i < length; i++) {
+                    values[i] ^= bias;
+                }
+            }
+
+            switch (comparison) {
+                case EQUAL:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] == value;
+                    }
+
+                    break;
+
+                case NOT_EQUAL:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] != value;
+                    }
+
+                    break;
+
+                case LESS:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] < value;
+                    }
+
+                    break;
+
+                case LESS_OR_EQUAL:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] <= value;
+                    }
+
+                    break;
+
+                case GREATER:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] > value;
+                    }
+
+                    break;
+
+                case GREATER_OR_EQUAL:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] >= value;
+                    }
+
+                    break;
+            }
+
+            Filter.applyNulls(column, index, length, mask, isNegated, scratch);
+        }
+    }
+
+    private static final class DoubleComparison extends Filter {
+        private final Column column;
+        private final Filter.Comparison comparison;
+        private final double value;
+        private final boolean isNegated;
+
+        private DoubleComparison(Column column, Filter.Comparison comparison, double value, boolean isNegated) {
+            Filter.checkType(column, false);
+            this.column = column;
+            this.comparison = comparison;
+            this.value = value;
+            this.isNegated = isNegated;
+        }
+
+        @Override
+        Filter negate() {
+            return new DoubleComparison(column, comparison, value, !isNegated);
+        }
+
+        @Override
+        void evaluate(long index, int length, boolean[] mask, Scratch scratch, int depth) {
+            column.checkRange(index, length);
+            double[] values = scratch.doubles();
+            column.readAsDoubles(index, length, values, scratch);
+
+            switch (comparison) {
+                case EQUAL:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] == value;
+                    }
+
+                    break;
+
+                case NOT_EQUAL:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] != value;
+                    }
+
+                    break;
+
+                case LESS:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] < value;
+                    }
+
+                    break;
+
+                case LESS_OR_EQUAL:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] <= value;
+                    }
+
+                    break;
+
+                case GREATER:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] > value;
+                    }
+
+                    break;
+
+                case GREATER_OR_EQUAL:
+                    for (int i = 0; i < length; i++) {
+                        mask[i] = values[i] >= value;
+                    }
+
+                    break;
+            }
+
+            Filter.applyNulls(column, index, length, mask, isNegated, scratch);
+        }
+    }
+
+    private static final class LongIn extends Filter {
+        private final Column column;
+        private final long[] values;
+        private final boolean isNegated;
+
+        private LongIn(Column column, long[] values, boolean isNegated) {
+            Filter.checkType(column, true);
+            this.column = column;
+            this.values = values.clone();
+            this.isNegated = isNegated;
+            Arrays.sort(this.values);
+        }
+
+        @Override
+        Filter negate() {
+            return new LongIn(column, values, !isNegated);
+        }
+
+        @Override
+        void evaluate(long index, int length, boolean[] mask, Scratch scratch, int depth) {
+            column.checkRange(index, length);
+            long[] columnValues = scratch.longs();
+            Filter.readValues(column, index, length, columnValues, scratch);
+
+            if (values.length <= 8) {
+                for (int i = 0; i < length; i++) {
+                    boolean found = false;
+
+                    for (long value : values) {
+                        found |= columnValues[i] == value;
+                    }
+
+                    mask[i] = found;
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    mask[i] = Arrays.binarySearch(values, columnValues[i]) >= 0;
+                }
+            }
+
+            Filter.applyNulls(column, index, length, mask, isNegated, scratch);
+        }
+    }
+
+    private static final class NullCheck extends Filter {
+        private final Column column;
+        private final boolean isNull;
+
+        private NullCheck(Column column, boolean isNull) {
+            this.column = column;
+            this.isNull = isNull;
+        }
+
+        @Override
+        Filter negate() {
+            return new NullCheck(column, !isNull);
+        }
+
+        @Override
+        void evaluate(long index, int length, boolean[] mask, Scratch scratch, int depth) {
+            column.checkRange(index, length);
+
+            if (!column.isNullable()) {
+                Arrays.fill(mask, 0, length, !isNull);
+            } else {
+                byte[] nullFlags = scratch.bytes();
+                column.nulls.read(index, nullFlags, 0, length);
+
+                for (int i = 0; i < length; i++) {
+                    mask[i] = (nullFlags[i] != 0) == isNull;
+                }
+            }
+        }
+    }
+
+    private static final class Combination extends Filter {
+        private final Filter[] filters;
+        private final boolean isAnd;
+
+        private Combination(Filter[] filters, boolean isAnd) {
+            if (filters.length == 0) {
+                throw new IllegalArgumentException("No filters specified");
+            }
+
+            this.filters = filters.clone();
+            this.isAnd = isAnd;
+        }
+
+        @Override
+        Filter negate() {
+            Filter[] negated = new Filter[filters.length];
+
+            for (int i = 0; i < filters.length; i++) {
+                negated[i] = filters[i].negate();
+            }
+
+            return new Combination(negated, !isAnd);
+        }
+
+        @Override
+        void evaluate(long index, int length, boolean[] mask, Scratch scratch, int depth) {
+            filters[0].evaluate(index, length, mask, scratch, depth);
+            boolean[] other = scratch.mask(depth);
+
+            for (int i = 1; i < filters.length; i++) {
+                filters[i].evaluate(index, length, other, scratch, depth + 1);
+
+                if (isAnd) {
+                    for (int j = 0; j < length; j++) {
+                        mask[j] &= other[j];
+                    }
+                } else {
+                    for (int j = 0; j < length; j++) {
+                        mask[j] |= other[j];
+                    }
+                }
+            }
+        }
+    }
+
+    private static interface ColumnCreator {
+        Column create(String name, ColumnType type, MappedFile file);
+    }
+
+    public static interface RangeAction {
+        void accept(long start, long end, RangeContext context);
+    }
+
+    public static final class RangeContext {
+        private long[] longs = new long[0];
+        private double[] doubles = new double[0];
+        private int[] ints = new int[0];
+        private byte[] bytes = new byte[0];
+        private boolean[] booleans = new boolean[0];
+        private VarSlice varSlice;
+        private Object attachment;
+
+        private RangeContext() {
+        }
+
+        public long[] getLongs(int length) {
+            if (longs.length < length) {
+                longs = new long[length];
+            }
+
+            return longs;
+        }
+
+        public double[] getDoubles(int length) {
+            if (doubles.length < length) {
+                doubles = new double[length];
+            }
+
+            return doubles;
+        }
+
+        public int[] getInts(int length) {
+            if (ints.length < length) {
+                ints = new int[length];
+            }
+
+            return ints;
+        }
+
+        public byte[] getBytes(int length) {
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+
+            return bytes;
+        }
+
+        public boolean[] getBooleans(int length) {
+            if (booleans.length < length) {
+                booleans = new boolean[length];
+            }
+
+            return booleans;
+        }
+
+        public VarSlice getVarSlice() {
+            if (varSlice == null) {
+                varSlice = new VarSlice();
+            }
+
+            return varSlice;
+        }
+
+        public Object getAttachment() {
+            return attachment;
+        }
+
+        public void setAttachment(Object attachment) {
+            this.attachment = attachment;
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long start;
+        private final long end;
+        private final long rangeSize;
+        private final RangeAction action;
+        private final ThreadLocal<RangeContext> contexts;
+
+        private RangeTask(long start, long end, long rangeSize, RangeAction action, ThreadLocal<RangeContext> contexts) {
+            this.start = start;
+            this.end = end;
+            this.rangeSize = rangeSize;
+            this.action = action;
+            this.contexts = contexts;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= rangeSize) {
+                action.accept(start, end, contexts.get());
+                return;
+            }
+
+            // Split on a range boundary so every range but the last is full
+            long mid = start + (end - start - 1) / rangeSize / 2 * rangeSize + rangeSize;
+            invokeAll(new RangeTask(start, mid, rangeSize, action, contexts),
+                    new RangeTask(mid, end, rangeSize, action, contexts));
+        }
+    }
+
+    public static final class RecordBatch {
+        private final InputTable table;
+        private final int capacity;
+        private final Object[] values;
+        private final boolean[][] nulls;
+        private final int[][] offsets;
+        private final int[][] lengths;
+        private long[] positions;
+        private long index;
+        private int length;
+
+        private RecordBatch(InputTable table, int capacity, int[] columns) {
+            int columnCount = table.getColumnCount();
+            this.table = table;
+            this.capacity = capacity;
+            values = new Object[columnCount];
+            nulls = new boolean[columnCount][];
+            offsets = new int[columnCount][];
+            lengths = new int[columnCount][];
+
+            if (columns == null) {
+                for (int i = 0; i < columnCount; i++) {
+                    allocate(i);
+                }
+            } else {
+                for (int column : columns) {
+                    if (column < 0 || column >= columnCount) {
+                        throw new IndexOutOfBoundsException("Invalid column specified");
+                    }
+
+                    allocate(column);
+                }
+            }
+        }
+
+        private void allocate(int column) {
+            ColumnType type = table.getColumn(column).getType();
+
+            switch (type) {
+                case BOOLEAN: values[column] = new boolean[capacity]; break;
+                case DATE: values[column] = new int[capacity]; break;
+                case DATETIME: values[column] = new long[capacity]; break;
+                case DECIMAL: values[column] = new long[capacity]; break;
+                case DOUBLE: values[column] = new double[capacity]; break;
+                case FLOAT: values[column] = new float[capacity]; break;
+                case INT: values[column] = new int[capacity]; break;
+                case INT8: values[column] = new byte[capacity]; break;
+                case INT16: values[column] = new short[capacity]; break;
+                case IPV4: values[column] = new int[capacity]; break;
+                case LONG: values[column] = new long[capacity]; break;
+                case TIME: values[column] = new int[capacity]; break;
+                case TIMESTAMP: values[column] = new long[capacity]; break;
+                case ULONG: values[column] = new long[capacity]; break;
+
+                case BYTES:
+                case STRING:
+                    values[column] = new byte[0];
+                    offsets[column] = new int[capacity + 1];
+                    lengths[column] = new int[capacity];
+
+                    if (positions == null) {
+                        positions = new long[capacity];
+                    }
+
+                    break;
+
+                case UUID:
+                    values[column] = new long[checkCapacity(2)];
+                    break;
+
+                default:
+                    values[column] = new byte[checkCapacity(type.getSize())];
+                    lengths[column] = new int[capacity];
+            }
+
+            nulls[column] = new boolean[capacity];
+        }
+
+        private int checkCapacity(int valueSize) {
+            if ((long)capacity * valueSize > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Invalid batch size specified");
+            }
+
+            return capacity * valueSize;
+        }
+
+        private void fill(long index, int length) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    continue;
+                }
+
+                InputColumn column = table.getColumn(i);
+
+                if (column.isNullable()) {
+                    column.getNulls(index, nulls[i], 0, length);
+                }
+
+                switch (column.getType()) {
+                    case BOOLEAN: column.getBooleans(index, (boolean[])values[i], 0, length); break;
+                    case DATE: column.getInts(index, (int[])values[i], 0, length); break;
+                    case DATETIME: column.getLongs(index, (long[])values[i], 0, length); break;
+                    case DECIMAL: column.getLongs(index, (long[])values[i], 0, length); break;
+                    case DOUBLE: column.getDoubles(index, (double[])values[i], 0, length); break;
+                    case FLOAT: column.getFloats(index, (float[])values[i], 0, length); break;
+                    case INT: column.getInts(index, (int[])values[i], 0, length); break;
+                    case INT8: column.getBytes(index, (byte[])values[i], 0, length); break;
+                    case INT16: column.getShorts(index, (short[])values[i], 0, length); break;
+                    case IPV4: column.getInts(index, (int[])values[i], 0, length); break;
+                    case LONG: column.getLongs(index, (long[])values[i], 0, length); break;
+                    case TIME: column.getInts(index, (int[])values[i], 0, length); break;
+                    case TIMESTAMP: column.getLongs(index, (long[])values[i], 0, length); break;
+                    case ULONG: column.getLongs(index, (long[])values[i], 0, length); break;
+                    case BYTES: fillVar(i, column, index, length, 0); break;
+                    case STRING: fillVar(i, column, index, length, 1); break;
+                    case UUID: column.data.read(index * 16, (long[])values[i], 0, length * 2L); break;
+                    default: column.getChars(index, (byte[])values[i], 0, lengths[i], 0, length);
+                }
+            }
+
+            this.index = index;
+            this.length = length;
+        }
+
+        // Var data for the whole batch is read with a single copy; offsets are
+        // rebased to the start of the batch
+        private void fillVar(int i, InputColumn column, long index, int length, int terminatorSize) {
+            long start = column.data.readLong(index * 8);
+            long end = index + length < column.size ? column.data.readLong((index + length) * 8) : column.varData.getSize();
+
+            if (end - start > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Batch too large: " + (end - start) + " bytes");
+            }
+
+            byte[] buffer = (byte[])values[i];
+
+            if (buffer.length < end - start) {
+                buffer = new byte[(int)Math.max(end - start, Math.min(buffer.length * 3L / 2, Integer.MAX_VALUE - 8))];
+                values[i] = buffer;
+            }
+
+            int[] valueOffsets = offsets[i];
+            int[] valueLengths = lengths[i];
+            column.data.read(index * 8, positions, 0, length);
+
+            for (int j = 0; j < length; j++) {
+                valueOffsets[j] = (int)(positions[j] - start);
+            }
+
+            valueOffsets[length] = (int)(end - start);
 
-        public long appendBoolean(Boolean value) {
-            long index = pos;
-            setBoolean(pos, value);
-            pos++;
-            return index;
-        }
+            for (int j = 0; j < length; j++) {
+                valueLengths[j] = Math.max(0, valueOffsets[j + 1] - valueOffsets[j] - terminatorSize);
+            }
 
-        public long appendByte(Byte value) {
-            long index = pos;
-            setByte(pos, value);
-            pos++;
-            return index;
+            column.varData.read(start, buffer, 0, end - start);
         }
 
-        public long appendCalendar(Calendar value) {
-            long index = pos;
-            setCalendar(pos, value);
-            pos++;
-            return index;
+        public InputTable getTable() {
+            return table;
         }
 
-        public long appendChar(String value) {
-            long index = pos;
-            setChar(pos, value);
-            pos++;
+        public long getIndex() {
             return index;
         }
 
-        public long appendDouble(Double value) {
-            long index = pos;
-            setDouble(pos, value);
-            pos++;
-            return index;
+        public int getLength() {
+            return length;
         }
 
-        public long appendFloat(Float value) {
-            long index = pos;
-            setFloat(pos, value);
-            pos++;
-            return index;
+        public int getCapacity() {
+            return capacity;
         }
 
-        public long appendInet4Address(Inet4Address value) {
-            long index = pos;
-            setInet4Address(pos, value);
-            pos++;
-            return index;
+        public boolean[] getNulls(int column) {
+            getValues(column);
+            return nulls[column];
         }
 
-        public long appendInt(Integer value) {
-            long index = pos;
-            setInt(pos, value);
-            pos++;
-            return index;
+        public boolean[] getBooleans(int column) {
+            Object result = getValues(column);
+
+            if (!(result instanceof boolean[])) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            return (boolean[])result;
         }
 
-        public long appendLong(Long value) {
-            long index = pos;
-            setLong(pos, value);
-            pos++;
-            return index;
+        public byte[] getBytes(int column) {
+            Object result = getValues(column);
+
+            if (!(result instanceof byte[])) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            return (byte[])result;
         }
 
-        public long appendShort(Short value) {
-            long index = pos;
-            setShort(pos, value);
-            pos++;
-            return index;
+        public short[] getShorts(int column) {
+            Object result = getValues(column);
+
+            if (!(result instanceof short[])) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            return (short[])result;
         }
 
-        public long appendUUID(UUID value) {
-            long index = pos;
-            setUUID(pos, value);
-            pos++;
-            return index;
+        public int[] getInts(int column) {
+            Object result = getValues(column);
+
+            if (!(result instanceof int[])) {
+                throw new IllegalStateException("Incompatible data type");
+            }
+
+            return (int[])result;
         }
 
-        public long appendVarBytes(byte[] value) {
-            if (type != ColumnType.BYTES) {
+        public long[] getLongs(int column) {
+            Object result = getValues(column);
+
+            if (!(result instanceof long[])) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            long index = pos;
-            data.writeLong(index * 8, varData.getPos());
+            return (long[])result;
+        }
 
-            if (!handleNull(index, value)) {
-                varData.write(value, value.length);
+        public float[] getFloats(int column) {
+            Object result = getValues(column);
+
+            if (!(result instanceof float[])) {
+                throw new IllegalStateException("Incompatible data type");
             }
 
-            pos++;
-            return index;
+            return (float[])result;
         }
 
-        public long appendVarString(String value) {
-            if (type != ColumnType.STRING) {
+        public double[] getDoubles(int column) {
+            Object result = getValues(column);
+
+            if (!(result instanceof double[])) {
                 throw new IllegalStateException("Incompatible data type");
             }
 
-            long index = pos;
-            data.writeLong(index * 8, varData.getPos());
+            return (double[])result;
+        }
 
-            if (!handleNull(index, value)) {
-                byte[] buffer = value.getBytes(StandardCharsets.UTF_8);
-                varData.write(buffer, buffer.length);
-                varData.writeByte((byte)0);
+        public int[] getOffsets(int column) {
+            getValues(column);
+
+            if (offsets[column] == null) {
+                throw new IllegalStateException("Incompatible data type");
             }
 
-            pos++;
-            return index;
+            return offsets[column];
         }
 
-        private void complete() {
-            if (type == ColumnType.BYTES || type == ColumnType.STRING) {
-                varData.truncate();
+        public int[] getLengths(int column) {
+            getValues(column);
+
+            if (lengths[column] == null) {
+                throw new IllegalStateException("Incompatible data type");
             }
+
+            return lengths[column];
         }
 
-        private void reserve(long size) {
-            data.remap(size * type.getSize());
+        private Object getValues(int column) {
+            if (column < 0 || column >= values.length) {
+                throw new IndexOutOfBoundsException("Invalid column specified");
+            }
 
-            if (isNullable()) {
-                nulls.remap(size);
+            if (values[column] == null) {
+                throw new IllegalStateException("Column " + table.getColumn(column).getName() + " is not loaded");
             }
 
-            this.size = size;
+            return values[column];
         }
     }
 
-    private static interface ColumnCreator {
-        Column create(MemoryMappedFile file);
+    private static final class BatchIterator implements Iterator<RecordBatch> {
+        private final RecordBatch batch;
+        private final long end;
+        private long index;
+
+        private BatchIterator(InputTable table, long index, long length, int batchSize, int[] columns) {
+            batch = new RecordBatch(table, batchSize, columns);
+            this.index = index;
+            end = index + length;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < end;
+        }
+
+        @Override
+        public RecordBatch next() {
+            if (index >= end) {
+                throw new NoSuchElementException();
+            }
+
+            int length = (int)Math.min(end - index, batch.getCapacity());
+            batch.fill(index, length);
+            index += length;
+            return batch;
+        }
     }
 
     public static abstract class Table<T> {
@@ -934,7 +6318,7 @@ public class ProcData {
         protected List<Column> columns;
         protected Map<String, Integer> columnMap;
 
-        private Table(MemoryMappedFile file, ColumnCreator columnCreator) {
+        private Table(MappedFile file, ColumnCreator columnCreator) {
             name = file.readString();
             long columnCount = file.readLong();
 
@@ -947,7 +6331,9 @@ public class ProcData {
             columnMap = new HashMap<>((int)columnCount);
 
             for (int i = 0; i < columnCount; i++) {
-                Column column = columnCreator.create(file);
+                String columnName = file.readString();
+                ColumnType columnType = ColumnType.fromInt((int)file.readLong());
+                Column column = columnCreator.create(columnName, columnType, file);
                 columns.add(column);
                 columnMap.put(column.getName(), i);
 
@@ -959,6 +6345,18 @@ public class ProcData {
             this.columns = Collections.unmodifiableList(columns);
         }
 
+        private Table(String name, List<Column> columns) {
+            this.name = name;
+            size = 0;
+            columnMap = new HashMap<>(columns.size());
+
+            for (int i = 0; i < columns.size(); i++) {
+                columnMap.put(columns.get(i).getName(), i);
+            }
+
+            this.columns = Collections.unmodifiableList(columns);
+        }
+
         public String getName() {
             return name;
         }
@@ -991,25 +6389,88 @@ public class ProcData {
             Integer result = columnMap.get(name);
             return result == null ? -1 : result;
         }
+
+        public void advise(AccessHint hint) {
+            for (Column column : columns) {
+                column.advise(hint);
+            }
+        }
+
+        public void advise(AccessHint hint, long index, long length) {
+            for (Column column : columns) {
+                column.advise(hint, index, length);
+            }
+        }
     }
 
     public static final class InputTable extends Table<InputColumn> {
-        private InputTable(MemoryMappedFile file) {
+        private InputTable(MappedFile file) {
             super(file, new ColumnCreator() {
                 @Override
-                public Column create(MemoryMappedFile file) {
-                    return new InputColumn(file);
+                public Column create(String name, ColumnType type, MappedFile file) {
+                    return InputColumn.create(name, type, file);
                 }
             });
         }
+
+        public void parallelForEach(long rangeSize, RangeAction action) {
+            parallelForEach(ForkJoinPool.commonPool(), rangeSize, action);
+        }
+
+        public void parallelForEach(ForkJoinPool pool, long rangeSize, RangeAction action) {
+            if (rangeSize <= 0) {
+                throw new IllegalArgumentException("Invalid range size specified");
+            }
+
+            if (size == 0) {
+                return;
+            }
+
+            ThreadLocal<RangeContext> contexts = new ThreadLocal<RangeContext>() {
+                @Override
+                protected RangeContext initialValue() {
+                    return new RangeContext();
+                }
+            };
+
+            pool.invoke(new RangeTask(0, size, rangeSize, action, contexts));
+        }
+
+        public Iterable<RecordBatch> batches(int batchSize) {
+            return batches(0, size, batchSize, null);
+        }
+
+        public Iterable<RecordBatch> batches(int batchSize, int[] columns) {
+            return batches(0, size, batchSize, columns);
+        }
+
+        public Iterable<RecordBatch> batches(final long index, final long length, final int batchSize, final int[] columns) {
+            if (index < 0 || length < 0 || index > size - length) {
+                throw new IndexOutOfBoundsException("Invalid index specified");
+            }
+
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("Invalid batch size specified");
+            }
+
+            return new Iterable<RecordBatch>() {
+                @Override
+                public Iterator<RecordBatch> iterator() {
+                    return new BatchIterator(InputTable.this, index, length, batchSize, columns);
+                }
+            };
+        }
     }
 
     public static final class OutputTable extends Table<OutputColumn> {
-        private OutputTable(MemoryMappedFile file) {
+        private boolean isAutoGrow;
+        private final List<PartitionWriter> partitions = new ArrayList<>();
+
+        private OutputTable(MappedFile file) {
             super(file, new ColumnCreator() {
                 @Override
-                public Column create(MemoryMappedFile file) {
-                    return new OutputColumn(file);
+                public Column create(String name, ColumnType type, MappedFile file) {
+                    return OutputColumn.create(name, type, file);
                 }
             });
         }
@@ -1026,22 +6487,203 @@ public class ProcData {
             this.size = size;
         }
 
+        public void setAutoGrow(boolean autoGrow) {
+            if (isAutoGrow && !autoGrow) {
+                setSize(getSize());
+            }
+
+            for (Column column : columns) {
+                ((OutputColumn)column).setAutoGrow(autoGrow);
+            }
+
+            this.isAutoGrow = autoGrow;
+        }
+
+        public boolean isAutoGrow() {
+            return isAutoGrow;
+        }
+
+        @Override
+        public long getSize() {
+            if (!isAutoGrow) {
+                return size;
+            }
+
+            long result = 0;
+
+            for (Column column : columns) {
+                result = Math.max(result, column.getSize());
+            }
+
+            return result;
+        }
+
+        public void copyFrom(InputTable source) {
+            copyFrom(source, null, 0, source.getSize());
+        }
+
+        public void copyFrom(InputTable source, int[] columnMapping) {
+            copyFrom(source, columnMapping, 0, source.getSize());
+        }
+
+        public void copyFrom(InputTable source, int[] columnMapping, long sourceIndex, long count) {
+            if (columnMapping == null ? source.getColumnCount() != columns.size() : columnMapping.length != columns.size()) {
+                throw new IllegalArgumentException("Column mapping does not match output column count");
+            }
+
+            // Every column is checked before any is copied, so that a rejected
+            // copy leaves the table unchanged
+            InputColumn[] sourceColumns = new InputColumn[columns.size()];
+
+            for (int i = 0; i < columns.size(); i++) {
+                sourceColumns[i] = source.getColumn(columnMapping == null ? i : columnMapping[i]);
+                ((OutputColumn)columns.get(i)).checkCopyFrom(sourceColumns[i], sourceIndex, count);
+            }
+
+            for (int i = 0; i < columns.size(); i++) {
+                ((OutputColumn)columns.get(i)).copyRows(sourceColumns[i], sourceIndex, count);
+            }
+        }
+
+        public synchronized PartitionWriter newPartitionWriter() {
+            if (!isAutoGrow) {
+                setAutoGrow(true);
+            }
+
+            PartitionWriter result = new PartitionWriter(this);
+            partitions.add(result);
+            return result;
+        }
+
+        private synchronized void appendPartition(PartitionWriter partition) {
+            long length = partition.getSize();
+
+            // Every column must be checked before any is appended, so that a
+            // rejected partition leaves the table unchanged
+            for (OutputColumn column : partition.getColumns()) {
+                if (column.getSize() != length) {
+                    throw new IllegalStateException("Partition column " + column.getName() + " has " + column.getSize()
+                            + " rows, expected " + length);
+                }
+            }
+
+            for (int i = 0; i < columns.size(); i++) {
+                ((OutputColumn)columns.get(i)).appendPartition(partition.getColumn(i));
+            }
+        }
+
+        private synchronized void removePartition(PartitionWriter partition) {
+            partitions.remove(partition);
+        }
+
+        public void appendGather(InputTable source, long[] rowIndices, int offset, int length) {
+            if (source.getColumnCount() != columns.size()) {
+                throw new IllegalArgumentException("Input column count does not match output column count");
+            }
+
+            for (int i = 0; i < columns.size(); i++) {
+                ((OutputColumn)columns.get(i)).checkAppendGather(source.getColumn(i), rowIndices, offset, length);
+            }
+
+            for (int i = 0; i < columns.size(); i++) {
+                ((OutputColumn)columns.get(i)).gatherRows(source.getColumn(i), rowIndices, offset, length);
+            }
+        }
+
         private void complete() {
+            for (PartitionWriter partition : new ArrayList<>(partitions)) {
+                partition.close();
+            }
+
+            // Auto-growing columns are trimmed to the longest column written
+            long finalSize = getSize();
+
+            for (Column column : columns) {
+                ((OutputColumn)column).complete(isAutoGrow ? finalSize : column.getSize());
+            }
+
+            size = finalSize;
+        }
+    }
+
+    public static final class PartitionWriter extends Table<OutputColumn> implements AutoCloseable {
+        private final OutputTable table;
+        private boolean isClosed;
+
+        private PartitionWriter(OutputTable table) {
+            super(table.getName(), createColumns(table));
+            this.table = table;
+        }
+
+        private static List<Column> createColumns(OutputTable table) {
+            List<Column> result = new ArrayList<>(table.getColumnCount());
+
+            for (OutputColumn column : table.getColumns()) {
+                result.add(column.createPartition());
+            }
+
+            return result;
+        }
+
+        public OutputTable getTable() {
+            return table;
+        }
+
+        @Override
+        public long getSize() {
+            long result = 0;
+
+            for (Column column : columns) {
+                result = Math.max(result, column.getSize());
+            }
+
+            return result;
+        }
+
+        public boolean isClosed() {
+            return isClosed;
+        }
+
+        public void flush() {
+            if (isClosed) {
+                throw new IllegalStateException("Partition writer is closed");
+            }
+
+            if (getSize() == 0) {
+                return;
+            }
+
+            table.appendPartition(this);
+
+            for (Column column : columns) {
+                ((OutputColumn)column).resetPartition();
+            }
+        }
+
+        public void close() {
+            if (isClosed) {
+                return;
+            }
+
+            flush();
+            isClosed = true;
+            table.removePartition(this);
+
             for (Column column : columns) {
-                ((OutputColumn)column).complete();
+                ((OutputColumn)column).releasePartition();
             }
         }
     }
 
     private static interface TableCreator {
-        Table<?> create(MemoryMappedFile file);
+        Table<?> create(MappedFile file);
     }
 
     public static abstract class DataSet<T> {
         protected List<Table<?>> tables;
         protected Map<String, Integer> tableMap;
 
-        private DataSet(MemoryMappedFile file, TableCreator tableCreator) {
+        private DataSet(MappedFile file, TableCreator tableCreator) {
             long tableCount = file.readLong();
 
             if (tableCount < 0 || tableCount > Integer.MAX_VALUE) {
@@ -1087,10 +6729,10 @@ public class ProcData {
     }
 
     public static class InputDataSet extends DataSet<InputTable> {
-        private InputDataSet(MemoryMappedFile file) {
+        private InputDataSet(MappedFile file) {
             super(file, new TableCreator() {
                 @Override
-                public Table<?> create(MemoryMappedFile file) {
+                public Table<?> create(MappedFile file) {
                     return new InputTable(file);
                 }
             });
@@ -1098,10 +6740,10 @@ public class ProcData {
     }
 
     public static class OutputDataSet extends DataSet<OutputTable> {
-        private OutputDataSet(MemoryMappedFile file) {
+        private OutputDataSet(MappedFile file) {
             super(file, new TableCreator() {
                 @Override
-                public Table<?> create(MemoryMappedFile file) {
+                public Table<?> create(MappedFile file) {
                     return new OutputTable(file);
                 }
             });
@@ -1114,14 +6756,23 @@ public class ProcData {
         }
     }
 
-    private static ProcData theProcData;
+    private static volatile ProcData theProcData;
 
     public static ProcData get() {
-        if (theProcData == null) {
-            theProcData = new ProcData();
+        ProcData result = theProcData;
+
+        if (result == null) {
+            synchronized (ProcData.class) {
+                result = theProcData;
+
+                if (result == null) {
+                    result = new ProcData();
+                    theProcData = result;
+                }
+            }
         }
 
-        return theProcData;
+        return result;
     }
 
     private Map<String, String> requestInfo;
@@ -1133,7 +6784,7 @@ public class ProcData {
     private Map<String, byte[]> binResults;
     private OutputDataSet outputData;
     private String status;
-    private MemoryMappedFile statusFile;
+    private MappedFile statusFile;
 
     private ProcData() {
         String controlFileName = System.getenv("KINETICA_PCF");
@@ -1142,7 +6793,7 @@ public class ProcData {
             throw new RuntimeException("No control file specified");
         }
 
-        MemoryMappedFile controlFile = new MemoryMappedFile();
+        MappedFile controlFile = MappedFile.create();
         controlFile.map(controlFileName, false, -1);
 
         long version = controlFile.readLong();
@@ -1161,7 +6812,7 @@ public class ProcData {
         outputControlFileName = controlFile.readString();
 
         if (version == 2) {
-            statusFile = new MemoryMappedFile();
+            statusFile = MappedFile.createLockable();
             statusFile.map(controlFile.readString(), true, -1);
         }
 
@@ -1218,7 +6869,7 @@ public class ProcData {
 
     public void complete() {
         outputData.complete();
-        MemoryMappedFile controlFile = new MemoryMappedFile();
+        MappedFile controlFile = MappedFile.create();
         controlFile.map(outputControlFileName, true, -1);
         controlFile.writeLong(1);
         controlFile.writeStringMap(results);
@@ -0,0 +1,117 @@
+package com.kinetica;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DateTimeEncodingTest {
+    private static final long MILLIS_PER_DAY = ProcData.Column.MILLIS_PER_DAY;
+    private static final int MIN_EPOCH_DAY = ProcData.Column.MIN_EPOCH_DAY;
+    private static final int MAX_EPOCH_DAY = ProcData.Column.MAX_EPOCH_DAY;
+
+    @Test
+    public void epochDayRange() {
+        assertEquals(LocalDate.of(876, 1, 1).toEpochDay(), MIN_EPOCH_DAY);
+        assertEquals(LocalDate.of(2923, 12, 31).toEpochDay(), MAX_EPOCH_DAY);
+    }
+
+    @Test
+    public void dateRoundTrip() {
+        for (int epochDay = MIN_EPOCH_DAY; epochDay <= MAX_EPOCH_DAY; epochDay++) {
+            int value = ProcData.Column.encodeDate(epochDay);
+            assertEquals(epochDay, ProcData.Column.decodeDate(value));
+        }
+    }
+
+    @Test
+    public void dateLayout() {
+        LocalDate[] dates = {
+            LocalDate.of(876, 1, 1),
+            LocalDate.of(1899, 12, 31),
+            LocalDate.of(1900, 3, 1),
+            LocalDate.of(1970, 1, 1),
+            LocalDate.of(2000, 2, 29),
+            LocalDate.of(2923, 12, 31)
+        };
+
+        for (LocalDate date : dates) {
+            int expected = ((date.getYear() - 1900) << 21) | (date.getMonthValue() << 17) | (date.getDayOfMonth() << 12);
+            assertEquals(expected, ProcData.Column.encodeDate(date.toEpochDay()));
+        }
+    }
+
+    @Test
+    public void dateTimeRoundTrip() {
+        long[] times = { 0, 1, 999, 1000, 59999, 3599999, 43200000, MILLIS_PER_DAY - 1 };
+
+        for (long epochDay = MIN_EPOCH_DAY; epochDay <= MAX_EPOCH_DAY; epochDay += 97) {
+            for (long millis : times) {
+                long epochMillis = epochDay * MILLIS_PER_DAY + millis;
+                long value = ProcData.Column.encodeDateTime(epochMillis);
+                assertEquals(epochMillis, ProcData.Column.decodeDateTime(value));
+            }
+        }
+
+        long max = MAX_EPOCH_DAY * MILLIS_PER_DAY + MILLIS_PER_DAY - 1;
+        assertEquals(max, ProcData.Column.decodeDateTime(ProcData.Column.encodeDateTime(max)));
+    }
+
+    @Test
+    public void dateTimeLayout() {
+        LocalDateTime dateTime = LocalDateTime.of(1969, 7, 20, 20, 17, 40, 123000000);
+        long value = ProcData.Column.encodeDateTime(dateTime.toInstant(ZoneOffset.UTC).toEpochMilli());
+        assertEquals(1969 - 1900, value >> 53);
+        assertEquals(7, (value >> 49) & 0b1111);
+        assertEquals(20, (value >> 44) & 0b11111);
+        assertEquals(20, (value >> 39) & 0b11111);
+        assertEquals(17, (value >> 33) & 0b111111);
+        assertEquals(40, (value >> 27) & 0b111111);
+        assertEquals(123, (value >> 17) & 0b1111111111);
+    }
+
+    @Test
+    public void timeRoundTrip() {
+        for (long millis = 0; millis < MILLIS_PER_DAY; millis += 7) {
+            int value = ProcData.Column.encodeTime(millis);
+            assertEquals(millis, ProcData.Column.decodeTime(value));
+        }
+
+        assertEquals(MILLIS_PER_DAY - 1, ProcData.Column.decodeTime(ProcData.Column.encodeTime(MILLIS_PER_DAY - 1)));
+    }
+
+    @Test
+    public void epochDayInRange() {
+        ProcData.OutputColumn.checkEpochDay(MIN_EPOCH_DAY);
+        ProcData.OutputColumn.checkEpochDay(0);
+        ProcData.OutputColumn.checkEpochDay(MAX_EPOCH_DAY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void epochDayBeforeRange() {
+        ProcData.OutputColumn.checkEpochDay(MIN_EPOCH_DAY - 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void epochDayAfterRange() {
+        ProcData.OutputColumn.checkEpochDay(MAX_EPOCH_DAY + 1);
+    }
+
+    @Test
+    public void millisOfDayInRange() {
+        ProcData.OutputColumn.checkMillisOfDay(0);
+        ProcData.OutputColumn.checkMillisOfDay(MILLIS_PER_DAY - 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void millisOfDayNegative() {
+        ProcData.OutputColumn.checkMillisOfDay(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void millisOfDayPastEnd() {
+        ProcData.OutputColumn.checkMillisOfDay(MILLIS_PER_DAY);
+    }
+}
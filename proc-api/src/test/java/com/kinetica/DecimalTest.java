@@ -0,0 +1,93 @@
+package com.kinetica;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DecimalTest {
+    @Test
+    public void parse() {
+        assertEquals(15000, ProcData.Decimal.parse("1.5"));
+        assertEquals(120000, ProcData.Decimal.parse("+12"));
+        assertEquals(-1, ProcData.Decimal.parse("-0.0001"));
+        assertEquals(5000, ProcData.Decimal.parse(".5"));
+        assertEquals(10000, ProcData.Decimal.parse("1."));
+        assertEquals(12345, ProcData.Decimal.parse("1.234500"));
+        assertEquals(Long.MAX_VALUE, ProcData.Decimal.parse("922337203685477.5807"));
+        assertEquals(Long.MIN_VALUE, ProcData.Decimal.parse("-922337203685477.5808"));
+    }
+
+    @Test
+    public void parseRoundTrip() {
+        long[] values = { 0, 1, -1, 9999, -10000, 123456789, Long.MAX_VALUE, Long.MIN_VALUE };
+
+        for (long value : values) {
+            assertEquals(value, ProcData.Decimal.parse(ProcData.Decimal.toString(value)));
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void parseInexact() {
+        ProcData.Decimal.parse("1.23456");
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void parseOverflow() {
+        ProcData.Decimal.parse("922337203685477.5808");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseEmpty() {
+        ProcData.Decimal.parse("-");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseInvalid() {
+        ProcData.Decimal.parse("1.2.3");
+    }
+
+    @Test
+    public void round() {
+        assertEquals(12300, ProcData.Decimal.round(12345, 2));
+        assertEquals(12400, ProcData.Decimal.round(12350, 2));
+        assertEquals(-12400, ProcData.Decimal.round(-12350, 2));
+        assertEquals(10000, ProcData.Decimal.round(5000, 0));
+        assertEquals(-10000, ProcData.Decimal.round(-5000, 0));
+        assertEquals(0, ProcData.Decimal.round(4999, 0));
+        assertEquals(12345, ProcData.Decimal.round(12345, 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void roundInvalidPlaces() {
+        ProcData.Decimal.round(12345, 5);
+    }
+
+    @Test
+    public void multiply() {
+        assertEquals(33750, ProcData.Decimal.multiply(15000, 22500));
+        assertEquals(-5, ProcData.Decimal.multiply(-15000, 3));
+        assertEquals(5, ProcData.Decimal.multiply(-15000, -3));
+        assertEquals(Long.MAX_VALUE, ProcData.Decimal.multiply(Long.MAX_VALUE, ProcData.Decimal.ONE));
+
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++) {
+            long a = random.nextLong() >> random.nextInt(64);
+            long b = random.nextLong() >> (32 + random.nextInt(32));
+            BigDecimal expected = BigDecimal.valueOf(a, 4).multiply(BigDecimal.valueOf(b, 4))
+                    .setScale(4, RoundingMode.HALF_UP);
+
+            if (expected.unscaledValue().bitLength() < 64) {
+                assertEquals(expected.unscaledValue().longValue(), ProcData.Decimal.multiply(a, b));
+            }
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void multiplyOverflow() {
+        ProcData.Decimal.multiply(Long.MAX_VALUE, ProcData.Decimal.valueOf(2));
+    }
+}
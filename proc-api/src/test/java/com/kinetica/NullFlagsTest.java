@@ -0,0 +1,36 @@
+package com.kinetica;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class NullFlagsTest {
+    @Test
+    public void normalize() {
+        assertEquals(0, ProcData.Column.normalizeNullFlags(0));
+        assertEquals(0x0101010101010101L, ProcData.Column.normalizeNullFlags(-1L));
+        assertEquals(0x0100000101000001L, ProcData.Column.normalizeNullFlags(0x8000004002000010L));
+    }
+
+    @Test
+    public void pack() {
+        Random random = new Random(42);
+        byte[] flags = new byte[8];
+
+        for (int i = 0; i < 10000; i++) {
+            int expected = 0;
+
+            for (int j = 0; j < 8; j++) {
+                // Any non-zero byte is a null, as in the nulls file
+                flags[j] = random.nextBoolean() ? (byte)(1 + random.nextInt(255)) : 0;
+                expected |= flags[j] != 0 ? 1 << j : 0;
+            }
+
+            long word = ByteBuffer.wrap(flags).order(ByteOrder.nativeOrder()).getLong();
+            assertEquals(expected, ProcData.Column.packNullFlags(word));
+        }
+    }
+}
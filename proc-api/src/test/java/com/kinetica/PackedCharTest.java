@@ -0,0 +1,61 @@
+package com.kinetica;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PackedCharTest {
+    private static final String[] VALUES = {
+        "", "\u0001", "A", "Z", "a", "aa", "ab", "abc", "abcdefg", "abcdefgh", "abcdefghi",
+        "abcdefghijklmnop", "b", "z", "~", "é", "été", "中"
+    };
+
+    @Test
+    public void ordering() {
+        for (String a : VALUES) {
+            for (String b : VALUES) {
+                int expected = Integer.signum(compareBytes(a, b));
+                int actual = Integer.signum(ProcData.PackedChar.compare(
+                        ProcData.PackedChar.pack(a, 0), ProcData.PackedChar.pack(a, 1),
+                        ProcData.PackedChar.pack(b, 0), ProcData.PackedChar.pack(b, 1)));
+                assertEquals(a + " <=> " + b, expected, actual);
+
+                if (a.getBytes(StandardCharsets.UTF_8).length <= 8 && b.getBytes(StandardCharsets.UTF_8).length <= 8) {
+                    actual = Integer.signum(ProcData.PackedChar.compare(ProcData.PackedChar.pack(a), ProcData.PackedChar.pack(b)));
+                    assertEquals(a + " <=> " + b, expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        for (String value : VALUES) {
+            long high = ProcData.PackedChar.pack(value, 0);
+            long low = ProcData.PackedChar.pack(value, 1);
+            assertEquals(value.getBytes(StandardCharsets.UTF_8).length, ProcData.PackedChar.length(high, low));
+            assertEquals(value, ProcData.PackedChar.toString(high, low));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void packTooLong() {
+        ProcData.PackedChar.pack("abcdefghijklmnopq");
+    }
+
+    private static int compareBytes(String a, String b) {
+        byte[] aBytes = a.getBytes(StandardCharsets.UTF_8);
+        byte[] bBytes = b.getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < Math.min(aBytes.length, bBytes.length); i++) {
+            int result = (aBytes[i] & 0xFF) - (bBytes[i] & 0xFF);
+
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return aBytes.length - bBytes.length;
+    }
+}